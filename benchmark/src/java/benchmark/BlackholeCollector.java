@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class BlackholeCollector hands every result to a JMH {@link Blackhole}, so results are never optimized away, and
+ * serves as both a Cascading and a Hadoop output collector.
+ */
+public class BlackholeCollector extends TupleEntryCollector implements OutputCollector<Object, Object>
+  {
+  private final Blackhole blackhole;
+
+  public BlackholeCollector( Blackhole blackhole )
+    {
+    this.blackhole = blackhole;
+    }
+
+  @Override
+  protected void collect( Tuple tuple )
+    {
+    blackhole.consume( tuple );
+    }
+
+  public void collect( Object key, Object value )
+    {
+    blackhole.consume( key );
+    blackhole.consume( value );
+    }
+  }
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Class Corpus loads the records the benchmarks run over, either from the data bundled with the samples, or from a
+ * file written by {@link #main}, which synthesizes Apache log lines or crawled pages of any size.
+ * <p/>
+ * Synthetic pages are written in the same "url \t page" layout as "url+page.200.txt", with new lines replaced by
+ * ":nl:". When a bundled file is missing, 200 synthetic records are used in its place.
+ */
+public class Corpus
+  {
+  public static final String SAMPLE = "sample";
+
+  public static final String APACHE = "apache";
+  public static final String PAGES = "pages";
+
+  // relative to the benchmark directory, the benchmarks run from
+  static final String APACHE_SAMPLE = "../loganalysis/data/apache.200.txt";
+  static final String PAGES_SAMPLE = "../wordcount/data/url+page.200.txt";
+
+  private static final int SAMPLE_RECORDS = 200;
+
+  private static final String[] METHODS = {"GET", "GET", "GET", "GET", "POST", "HEAD"};
+  private static final String[] PATHS = {"/", "/index.html", "/mt-tb.cgi/", "/archives/", "/feed/", "/images/", "/wp-login.php", "/tags/"};
+  private static final String[] STATUSES = {"200", "200", "200", "200", "304", "403", "404", "500"};
+  private static final String[] AGENTS = {"Mozilla/5.0 (Windows; U; Windows NT 5.1; en-US; rv:1.8.1.6) Gecko/20070725 Firefox/2.0.0.6", "Opera/9.10 (Windows NT 5.1; U; ru)", "Googlebot/2.1 (+http://www.google.com/bot.html)", "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1)"};
+
+  // mostly english, with enough other scripts and punctuation to exercise the tokenizers
+  private static final String[] WORDS = {"the", "of", "and", "to", "in", "is", "that", "for", "it", "with", "as", "was", "on", "cascading", "hadoop", "data", "flow", "pipe", "tuple", "stream", "don't", "e-mail", "U.S.", "Straße", "naïve", "café", "日本語", "Привет", "мир", "ελληνικά", "שלום", "مرحبا", "हिन्दी", "한국어", "2007", "(see", "below)", "--", "\"quoted\"", "end."};
+
+  /**
+   * Method main writes a synthetic corpus, the arguments are the type, "apache" or "pages", the size in bytes, with an
+   * optional k, m or g suffix, and the file to write.
+   *
+   * @param args of type String[]
+   * @throws IOException when the file cannot be written
+   */
+  public static void main( String[] args ) throws IOException
+    {
+    String type = args[ 0 ];
+    long size = parseSize( args[ 1 ] );
+    File file = new File( args[ 2 ] );
+
+    if( file.getParentFile() != null )
+      file.getParentFile().mkdirs();
+
+    Writer writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" ), 1 << 16 );
+
+    try
+      {
+      write( type, writer, size, -1 );
+      }
+    finally
+      {
+      writer.close();
+      }
+
+    System.out.println( "wrote " + file.length() + " bytes of " + type + " to: " + file );
+    }
+
+  static long parseSize( String size )
+    {
+    String digits = size.toLowerCase( Locale.ENGLISH );
+    long scale = 1;
+
+    if( digits.endsWith( "k" ) )
+      scale = 1L << 10;
+    else if( digits.endsWith( "m" ) )
+      scale = 1L << 20;
+    else if( digits.endsWith( "g" ) )
+      scale = 1L << 30;
+
+    if( scale != 1 )
+      digits = digits.substring( 0, digits.length() - 1 );
+
+    return Long.parseLong( digits ) * scale;
+    }
+
+  /**
+   * Method apacheLines returns the lines of the given corpus, or of the bundled sample if corpus is "sample".
+   *
+   * @param corpus of type String
+   * @return String[]
+   * @throws IOException when the corpus cannot be read
+   */
+  public static String[] apacheLines( String corpus ) throws IOException
+    {
+    return readLines( corpus, APACHE, APACHE_SAMPLE );
+    }
+
+  /**
+   * Method pages returns the pages of the given corpus, or of the bundled sample if corpus is "sample", with ":nl:"
+   * turned back into new lines and pdf documents removed, as the wordcount import does.
+   *
+   * @param corpus of type String
+   * @return String[]
+   * @throws IOException when the corpus cannot be read
+   */
+  public static String[] pages( String corpus ) throws IOException
+    {
+    List<String> pages = new ArrayList<String>();
+
+    for( String line : readLines( corpus, PAGES, PAGES_SAMPLE ) )
+      {
+      int tab = line.indexOf( '\t' );
+
+      if( tab == -1 || line.substring( 0, tab ).endsWith( ".pdf" ) )
+        continue;
+
+      pages.add( line.substring( tab + 1 ).replace( ":nl:", "\n" ) );
+      }
+
+    return pages.toArray( new String[ pages.size() ] );
+    }
+
+  private static String[] readLines( String corpus, String type, String sample ) throws IOException
+    {
+    File file = new File( SAMPLE.equals( corpus ) ? sample : corpus );
+
+    if( !file.exists() )
+      {
+      if( !SAMPLE.equals( corpus ) )
+        throw new IOException( "corpus not found: " + file );
+
+      StringWriter writer = new StringWriter();
+      write( type, writer, Long.MAX_VALUE, SAMPLE_RECORDS );
+
+      return writer.toString().split( "\n" );
+      }
+
+    BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+    List<String> lines = new ArrayList<String>();
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        lines.add( line );
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    return lines.toArray( new String[ lines.size() ] );
+    }
+
+  // writes records until either limit is reached, the same seed always writes the same corpus
+  private static void write( String type, Writer writer, long size, int records ) throws IOException
+    {
+    if( !APACHE.equals( type ) && !PAGES.equals( type ) )
+      throw new IllegalArgumentException( "unknown corpus type: " + type + ", must be '" + APACHE + "' or '" + PAGES + "'" );
+
+    Random random = new Random( 1 );
+    SimpleDateFormat dateFormat = new SimpleDateFormat( "dd/MMM/yyyy:HH:mm:ss Z", Locale.US );
+    dateFormat.setTimeZone( TimeZone.getTimeZone( "UTC" ) );
+    long time = 1188604800000L; // 01/Sep/2007:00:00:00 +0000
+    long written = 0;
+
+    for( int i = 0; written < size && i != records; i++ )
+      {
+      String record;
+
+      if( APACHE.equals( type ) )
+        {
+        time += random.nextInt( 3000 );
+        record = apacheLine( random, dateFormat.format( new Date( time ) ) );
+        }
+      else
+        {
+        record = page( random, i );
+        }
+
+      writer.write( record );
+      writer.write( '\n' );
+      written += record.length() + 1; // close enough to bytes for sizing
+      }
+    }
+
+  private static String apacheLine( Random random, String time )
+    {
+    StringBuilder builder = new StringBuilder( 160 );
+
+    builder.append( random.nextInt( 224 ) + 1 ).append( '.' ).append( random.nextInt( 256 ) ).append( '.' );
+    builder.append( random.nextInt( 256 ) ).append( '.' ).append( random.nextInt( 256 ) );
+    builder.append( " - - [" ).append( time ).append( "] \"" );
+    builder.append( pick( random, METHODS ) ).append( ' ' ).append( pick( random, PATHS ) ).append( random.nextInt( 300 ) );
+    builder.append( " HTTP/1.1\" " ).append( pick( random, STATUSES ) ).append( ' ' ).append( random.nextInt( 20000 ) );
+    builder.append( " \"-\" \"" ).append( pick( random, AGENTS ) ).append( "\" \"-\"" );
+
+    return builder.toString();
+    }
+
+  private static String page( Random random, int index )
+    {
+    StringBuilder builder = new StringBuilder( 4096 );
+
+    builder.append( "http://www.example.com/page/" ).append( index ).append( ".html\t" );
+    builder.append( "<html>:nl:<head><title>" );
+    words( random, builder, 4 );
+    builder.append( "</title>:nl:<script type=\"text/javascript\">var page = " ).append( index ).append( ";</script>:nl:</head>:nl:<body>:nl:<h1>" );
+    words( random, builder, 6 );
+    builder.append( "</h1>:nl:" );
+
+    int paragraphs = 2 + random.nextInt( 8 );
+
+    for( int i = 0; i < paragraphs; i++ )
+      {
+      builder.append( "<p>" );
+      words( random, builder, 20 + random.nextInt( 60 ) );
+      builder.append( " <a href=\"/page/" ).append( random.nextInt( 1000 ) ).append( ".html\">" );
+      words( random, builder, 3 );
+      builder.append( "</a> <b>" );
+      words( random, builder, 2 );
+      builder.append( "</b>" );
+      words( random, builder, 10 );
+      builder.append( "</p>:nl:" );
+      }
+
+    builder.append( "<script>document.write('tracking');</script>:nl:</body>:nl:</html>" );
+
+    return builder.toString();
+    }
+
+  private static void words( Random random, StringBuilder builder, int count )
+    {
+    for( int i = 0; i < count; i++ )
+      builder.append( ' ' ).append( pick( random, WORDS ) );
+    }
+
+  private static String pick( Random random, String[] values )
+    {
+    return values[ random.nextInt( values.length ) ];
+    }
+  }
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import cascading.cascade.CascadeConnector;
+import cascading.flow.Flow;
+import cascading.flow.FlowConnector;
+import cascading.stats.FlowStats;
+import cascading.stats.StepStats;
+import common.ParallelMapRunner;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+
+/**
+ * Class FlowRunner runs the flows of each sample in Hadoop local mode over synthetic inputs of growing size, and writes
+ * one row per measurement as CSV or JSON, for scaling curves and for comparing runs.
+ * <p/>
+ * Per run it records the wall time and the GC time and collections of this JVM, local mode runs every task in it.
+ * Per flow it records the flow duration, and per step, one MapReduce job, every counter, so the map and reduce
+ * records in and out, the spilled records, the map output and shuffle bytes, the local file bytes, and the Cascading
+ * tuples read and written. Operations wrapped for metering show up as counters of their own.
+ * <p/>
+ * The arguments are all optional
+ * <pre>
+ * --sizes 1m,10m,100m,1g,10g   input sizes, with k, m and g suffixes
+ * --samples logparser,loganalysis,wordcount
+ * --format csv                 or json
+ * --output file                instead of stdout
+ * --work build/flows           where inputs are generated, once per size, and flows write
+ * --parallel 1                 threads each map task runs on, see common.ParallelMapRunner
+ * </pre>
+ */
+public class FlowRunner
+  {
+  public static final String LOGPARSER = "logparser";
+  public static final String LOGANALYSIS = "loganalysis";
+  public static final String WORDCOUNT = "wordcount";
+
+  private static final String[] HEADER = {"sample", "size", "flow", "step", "metric", "value"};
+
+  private final Properties properties;
+  private final String workPath;
+  private final List<String[]> rows = new ArrayList<String[]>();
+
+  public static void main( String[] args ) throws IOException
+    {
+    List<String> options = Arrays.asList( args );
+
+    String[] sizes = option( options, "--sizes", "1m,10m,100m,1g,10g" ).split( "," );
+    String[] samples = option( options, "--samples", LOGPARSER + "," + LOGANALYSIS + "," + WORDCOUNT ).split( "," );
+    String format = option( options, "--format", "csv" );
+    String output = option( options, "--output", null );
+
+    FlowRunner runner = new FlowRunner( option( options, "--work", "build/flows" ), Integer.parseInt( option( options, "--parallel", "1" ) ) );
+
+    for( String size : sizes )
+      {
+      for( String sample : samples )
+        runner.run( sample, size );
+      }
+
+    PrintWriter writer = new PrintWriter( output == null ? new OutputStreamWriter( System.out, "UTF-8" ) : new OutputStreamWriter( new FileOutputStream( output ), "UTF-8" ) );
+
+    try
+      {
+      if( "json".equals( format ) )
+        runner.writeJSON( writer );
+      else if( "csv".equals( format ) )
+        runner.writeCSV( writer );
+      else
+        throw new IllegalArgumentException( "unknown format: " + format + ", must be 'csv' or 'json'" );
+      }
+    finally
+      {
+      writer.close();
+      }
+    }
+
+  // the value following the given option, or the default value if the option is absent
+  static String option( List<String> options, String name, String defaultValue )
+    {
+    int index = options.indexOf( name );
+
+    if( index == -1 )
+      return defaultValue;
+
+    if( index == options.size() - 1 )
+      throw new IllegalArgumentException( "missing value for: " + name );
+
+    return options.get( index + 1 );
+    }
+
+  public FlowRunner( String workPath, int threads )
+    {
+    this.workPath = workPath;
+
+    // every job runs in this JVM, reading and writing the local file system
+    properties = new Properties();
+    ParallelMapRunner.setLocalParallelism( properties, threads );
+    }
+
+  /**
+   * Method run runs the flows of the given sample over an input of the given size, generating the input first if
+   * it does not exist yet.
+   *
+   * @param sample of type String
+   * @param size   of type String
+   * @throws IOException when the input cannot be generated or the previous output cannot be deleted
+   */
+  public void run( String sample, String size ) throws IOException
+    {
+    String type = WORDCOUNT.equals( sample ) ? Corpus.PAGES : Corpus.APACHE;
+    String inputPath = workPath + "/input/" + type + "." + size + ".txt";
+    String outputPath = workPath + "/output/" + sample + "/" + size;
+
+    if( !new File( inputPath ).exists() )
+      Corpus.main( new String[]{type, size, inputPath} );
+
+    FileSystem.getLocal( new JobConf() ).delete( new Path( outputPath ), true );
+
+    Flow[] flows = createFlows( sample, new FlowConnector( properties ), inputPath, outputPath );
+
+    long gcTime = gcTime();
+    long gcCount = gcCount();
+    long startTime = System.currentTimeMillis();
+
+    new CascadeConnector().connect( flows ).complete();
+
+    add( sample, size, "", "", "wall ms", System.currentTimeMillis() - startTime );
+    add( sample, size, "", "", "gc ms", gcTime() - gcTime );
+    add( sample, size, "", "", "gc collections", gcCount() - gcCount );
+    add( sample, size, "", "", "input bytes", new File( inputPath ).length() );
+
+    for( Flow flow : flows )
+      addStats( sample, size, flow );
+    }
+
+  static Flow[] createFlows( String sample, FlowConnector flowConnector, String inputPath, String outputPath )
+    {
+    if( LOGPARSER.equals( sample ) )
+      return new Flow[]{logparser.Main.createFlow( flowConnector, inputPath, outputPath + "/logs" )};
+
+    if( LOGANALYSIS.equals( sample ) )
+      return loganalysis.Main.createFlows( flowConnector, inputPath, outputPath );
+
+    if( WORDCOUNT.equals( sample ) )
+      return wordcount.Main.createFlows( flowConnector, inputPath, outputPath, outputPath + "/local" );
+
+    throw new IllegalArgumentException( "unknown sample: " + sample + ", must be '" + LOGPARSER + "', '" + LOGANALYSIS + "' or '" + WORDCOUNT + "'" );
+    }
+
+  private void addStats( String sample, String size, Flow flow )
+    {
+    FlowStats flowStats = flow.getFlowStats();
+
+    add( sample, size, flow.getName(), "", "duration ms", flowStats.getDuration() );
+
+    for( Object child : flowStats.getChildren() )
+      {
+      StepStats stepStats = (StepStats) child;
+
+      for( String group : stepStats.getCounterGroups() )
+        {
+        for( String counter : stepStats.getCountersFor( group ) )
+          add( sample, size, flow.getName(), stepStats.getName(), group + ":" + counter, stepStats.getCounterValue( group, counter ) );
+        }
+      }
+    }
+
+  private void add( String sample, String size, String flow, String step, String metric, long value )
+    {
+    rows.add( new String[]{sample, size, flow, step, metric, Long.toString( value )} );
+    }
+
+  private static long gcTime()
+    {
+    long time = 0;
+
+    for( GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans() )
+      time += Math.max( 0, bean.getCollectionTime() );
+
+    return time;
+    }
+
+  private static long gcCount()
+    {
+    long count = 0;
+
+    for( GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans() )
+      count += Math.max( 0, bean.getCollectionCount() );
+
+    return count;
+    }
+
+  public void writeCSV( PrintWriter writer )
+    {
+    writeCSVRow( writer, HEADER );
+
+    for( String[] row : rows )
+      writeCSVRow( writer, row );
+    }
+
+  private static void writeCSVRow( PrintWriter writer, String[] row )
+    {
+    for( int i = 0; i < row.length; i++ )
+      {
+      if( i != 0 )
+        writer.print( ',' );
+
+      String value = row[ i ];
+
+      if( value.indexOf( ',' ) != -1 || value.indexOf( '"' ) != -1 || value.indexOf( '\n' ) != -1 )
+        value = "\"" + value.replace( "\"", "\"\"" ) + "\"";
+
+      writer.print( value );
+      }
+
+    writer.println();
+    }
+
+  public void writeJSON( PrintWriter writer )
+    {
+    writer.println( "[" );
+
+    for( int i = 0; i < rows.size(); i++ )
+      {
+      String[] row = rows.get( i );
+
+      writer.print( "  {" );
+
+      for( int j = 0; j < HEADER.length; j++ )
+        {
+        if( j != 0 )
+          writer.print( ", " );
+
+        // the value is always a number
+        writer.print( quote( HEADER[ j ] ) + ": " + ( j == HEADER.length - 1 ? row[ j ] : quote( row[ j ] ) ) );
+        }
+
+      writer.println( i == rows.size() - 1 ? "}" : "}," );
+      }
+
+    writer.println( "]" );
+    }
+
+  private static String quote( String value )
+    {
+    StringBuilder builder = new StringBuilder( value.length() + 2 );
+
+    builder.append( '"' );
+
+    for( int i = 0; i < value.length(); i++ )
+      {
+      char current = value.charAt( i );
+
+      if( current == '"' || current == '\\' )
+        builder.append( '\\' ).append( current );
+      else if( current < 0x20 )
+        builder.append( String.format( "\\u%04x", (int) current ) );
+      else
+        builder.append( current );
+      }
+
+    return builder.append( '"' ).toString();
+    }
+  }
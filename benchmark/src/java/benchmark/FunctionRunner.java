@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.operation.Function;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Class FunctionRunner drives a {@link Function} outside of a flow, the way an Each pipe would, so a single stage can
+ * be measured on its own. The function is prepared once and the call and argument entry are re-used for every tuple.
+ */
+@SuppressWarnings("unchecked")
+public class FunctionRunner
+  {
+  private final Function function;
+  private final ConcreteCall call;
+  private final TupleEntry arguments;
+
+  public FunctionRunner( Function function, Fields argumentFields, TupleEntryCollector outputCollector )
+    {
+    this.function = function;
+    this.call = new ConcreteCall( argumentFields, function.getFieldDeclaration() );
+    this.arguments = new TupleEntry( argumentFields, Tuple.size( argumentFields.size() ) );
+
+    call.setArguments( arguments );
+    call.setOutputCollector( outputCollector );
+
+    function.prepare( FlowProcess.NULL, call );
+    }
+
+  public void operate( Tuple tuple )
+    {
+    arguments.setTuple( tuple );
+    function.operate( FlowProcess.NULL, call );
+    }
+
+  public void cleanup()
+    {
+    function.cleanup( FlowProcess.NULL, call );
+    }
+
+  /**
+   * Class ChainCollector hands every result to the next function, like consecutive Each pipes.
+   */
+  public static class ChainCollector extends TupleEntryCollector
+    {
+    private FunctionRunner next;
+
+    public void setNext( FunctionRunner next )
+      {
+      this.next = next;
+      }
+
+    @Override
+    protected void collect( Tuple tuple )
+      {
+      next.operate( tuple );
+      }
+    }
+  }
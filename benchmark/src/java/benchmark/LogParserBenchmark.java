@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import cascading.operation.regex.RegexParser;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import hadoop.RegexParserMap;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class LogParserBenchmark measures parsing one Apache log line into its six fields, with the Cascading
+ * {@link RegexParser} the loganalysis and logparser samples use, and with {@link RegexParserMap} in its regex and
+ * scanner modes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LogParserBenchmark
+  {
+  static final Fields apacheFields = new Fields( "ip", "time", "method", "event", "status", "size" );
+  static final String apacheRegex = "^([^ ]*) +[^ ]* +[^ ]* +\\[([^]]*)\\] +\\\"([^ ]*) ([^ ]*) [^ ]*\\\" ([^ ]*) ([^ ]*).*$";
+  static final int[] apacheGroups = {1, 2, 3, 4, 5, 6};
+
+  @Param({Corpus.SAMPLE})
+  public String corpus;
+
+  private Tuple[] lines;
+  private Text[] texts;
+  private int index;
+
+  private final LongWritable offset = new LongWritable();
+  private FunctionRunner regexParser;
+  private RegexParserMap regexMap;
+  private RegexParserMap scannerMap;
+  private OutputCollector<Text, Text> outputCollector;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup( Blackhole blackhole ) throws IOException
+    {
+    String[] records = Corpus.apacheLines( corpus );
+
+    lines = new Tuple[ records.length ];
+    texts = new Text[ records.length ];
+
+    for( int i = 0; i < records.length; i++ )
+      {
+      lines[ i ] = new Tuple( records[ i ] );
+      texts[ i ] = new Text( records[ i ] );
+      }
+
+    BlackholeCollector collector = new BlackholeCollector( blackhole );
+
+    regexParser = new FunctionRunner( new RegexParser( apacheFields, apacheRegex, apacheGroups ), new Fields( "line" ), collector );
+    regexMap = createMap( RegexParserMap.PARSER_REGEX );
+    scannerMap = createMap( RegexParserMap.PARSER_SCANNER );
+    outputCollector = (OutputCollector) collector;
+    }
+
+  private static RegexParserMap createMap( String parser )
+    {
+    JobConf jobConf = new JobConf();
+    jobConf.set( "logparser.regex", apacheRegex );
+    jobConf.set( RegexParserMap.PARSER, parser );
+
+    RegexParserMap map = new RegexParserMap();
+    map.configure( jobConf );
+
+    return map;
+    }
+
+  private int next()
+    {
+    if( ++index == lines.length )
+      index = 0;
+
+    return index;
+    }
+
+  @Benchmark
+  public void regexParser()
+    {
+    regexParser.operate( lines[ next() ] );
+    }
+
+  @Benchmark
+  public void regexParserMapRegex() throws IOException
+    {
+    regexMap.map( offset, texts[ next() ], outputCollector, Reporter.NULL );
+    }
+
+  @Benchmark
+  public void regexParserMapScanner() throws IOException
+    {
+    scannerMap.map( offset, texts[ next() ], outputCollector, Reporter.NULL );
+    }
+  }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import cascading.operation.xml.TagSoupParser;
+import cascading.operation.xml.XPathGenerator;
+import cascading.operation.xml.XPathOperation;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import wordcount.BodyTextExtractor;
+
+/**
+ * Class PageTextBenchmark measures extracting the body text of one crawled page, with the TagSoup to DOM to XPath
+ * chain wordcount used to apply, and with the streaming {@link BodyTextExtractor} it uses now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PageTextBenchmark
+  {
+  @Param({Corpus.SAMPLE})
+  public String corpus;
+
+  private Tuple[] pages;
+  private int index;
+
+  private FunctionRunner tagSoupXPath;
+  private FunctionRunner bodyTextExtractor;
+
+  @Setup
+  public void setup( Blackhole blackhole ) throws IOException
+    {
+    String[] records = Corpus.pages( corpus );
+
+    pages = new Tuple[ records.length ];
+
+    for( int i = 0; i < records.length; i++ )
+      pages[ i ] = new Tuple( records[ i ] );
+
+    BlackholeCollector collector = new BlackholeCollector( blackhole );
+
+    // the xhtml, then the body element, then the text nodes not directly inside a script element
+    FunctionRunner.ChainCollector toBody = new FunctionRunner.ChainCollector();
+    FunctionRunner.ChainCollector toText = new FunctionRunner.ChainCollector();
+    XPathGenerator bodyGenerator = new XPathGenerator( new Fields( "body" ), XPathOperation.NAMESPACE_XHTML, "//xhtml:body" );
+    XPathGenerator textGenerator = new XPathGenerator( new Fields( "words" ), XPathOperation.NAMESPACE_XHTML, "//text()[ name(parent::node()) != 'script']" );
+
+    tagSoupXPath = new FunctionRunner( new TagSoupParser( new Fields( "xml" ) ), new Fields( "page" ), toBody );
+    toBody.setNext( new FunctionRunner( bodyGenerator, new Fields( "xml" ), toText ) );
+    toText.setNext( new FunctionRunner( textGenerator, new Fields( "body" ), collector ) );
+
+    bodyTextExtractor = new FunctionRunner( new BodyTextExtractor( new Fields( "words" ) ), new Fields( "page" ), collector );
+    }
+
+  private int next()
+    {
+    if( ++index == pages.length )
+      index = 0;
+
+    return index;
+    }
+
+  @Benchmark
+  public void tagSoupXPath()
+    {
+    tagSoupXPath.operate( pages[ next() ] );
+    }
+
+  @Benchmark
+  public void bodyTextExtractor()
+    {
+    bodyTextExtractor.operate( pages[ next() ] );
+    }
+  }
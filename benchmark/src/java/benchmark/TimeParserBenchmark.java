@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import cascading.operation.text.DateParser;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import loganalysis.ApacheTime;
+import loganalysis.ApacheTimeParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class TimeParserBenchmark measures parsing the time field of one Apache log line, with the Cascading
+ * {@link DateParser} loganalysis used to apply, and with the {@link ApacheTimeParser} it uses now.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TimeParserBenchmark
+  {
+  @Param({Corpus.SAMPLE})
+  public String corpus;
+
+  private Tuple[] times;
+  private int index;
+
+  private FunctionRunner dateParser;
+  private FunctionRunner apacheTimeParser;
+
+  @Setup
+  public void setup( Blackhole blackhole ) throws IOException
+    {
+    String[] records = Corpus.apacheLines( corpus );
+
+    times = new Tuple[ records.length ];
+
+    for( int i = 0; i < records.length; i++ )
+      {
+      String line = records[ i ];
+      times[ i ] = new Tuple( line.substring( line.indexOf( '[' ) + 1, line.indexOf( ']' ) ) );
+      }
+
+    BlackholeCollector collector = new BlackholeCollector( blackhole );
+
+    dateParser = new FunctionRunner( new DateParser( new Fields( "ts" ), ApacheTime.FORMAT ), new Fields( "time" ), collector );
+    apacheTimeParser = new FunctionRunner( new ApacheTimeParser( new Fields( "ts" ) ), new Fields( "time" ), collector );
+    }
+
+  private int next()
+    {
+    if( ++index == times.length )
+      index = 0;
+
+    return index;
+    }
+
+  @Benchmark
+  public void dateParser()
+    {
+    dateParser.operate( times[ next() ] );
+    }
+
+  @Benchmark
+  public void apacheTimeParser()
+    {
+    apacheTimeParser.operate( times[ next() ] );
+    }
+  }
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cascading.operation.regex.RegexGenerator;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import wordcount.BodyTextExtractor;
+import wordcount.PageWordCounter;
+import wordcount.WordTokenizer;
+
+/**
+ * Class WordsBenchmark measures splitting the body text of one crawled page into words, with the Cascading
+ * {@link RegexGenerator} and lookaround regex wordcount used to apply, with the {@link WordTokenizer} alone, and with
+ * the {@link PageWordCounter} that tokenizes and counts the words of a page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WordsBenchmark
+  {
+  static final String wordRegex = "(?<!\\pL)(?=\\pL)[^ ]*(?<=\\pL)(?!\\pL)";
+
+  @Param({Corpus.SAMPLE})
+  public String corpus;
+
+  private Tuple[] texts;
+  private Tuple[] urlTexts;
+  private int index;
+
+  private Blackhole blackhole;
+  private FunctionRunner regexGenerator;
+  private WordTokenizer wordTokenizer;
+  private FunctionRunner pageWordCounter;
+
+  @Setup
+  public void setup( Blackhole blackhole ) throws IOException
+    {
+    final List<Tuple> bodies = new ArrayList<Tuple>();
+
+    TupleEntryCollector bodyCollector = new TupleEntryCollector()
+    {
+    @Override
+    protected void collect( Tuple tuple )
+      {
+      bodies.add( tuple );
+      }
+    };
+
+    // the words are split from the body text, not the raw page
+    FunctionRunner extractor = new FunctionRunner( new BodyTextExtractor( new Fields( "words" ) ), new Fields( "page" ), bodyCollector );
+
+    for( String page : Corpus.pages( corpus ) )
+      extractor.operate( new Tuple( page ) );
+
+    texts = bodies.toArray( new Tuple[ bodies.size() ] );
+    urlTexts = new Tuple[ texts.length ];
+
+    for( int i = 0; i < texts.length; i++ )
+      urlTexts[ i ] = new Tuple( i, texts[ i ].getString( 0 ) );
+
+    BlackholeCollector collector = new BlackholeCollector( blackhole );
+
+    this.blackhole = blackhole;
+    regexGenerator = new FunctionRunner( new RegexGenerator( new Fields( "word" ), wordRegex ), new Fields( "words" ), collector );
+    wordTokenizer = new WordTokenizer();
+    pageWordCounter = new FunctionRunner( new PageWordCounter( new Fields( "url", "word", "count" ) ), new Fields( "url", "words" ), collector );
+    }
+
+  private int next()
+    {
+    if( ++index == texts.length )
+      index = 0;
+
+    return index;
+    }
+
+  @Benchmark
+  public void regexGenerator()
+    {
+    regexGenerator.operate( texts[ next() ] );
+    }
+
+  @Benchmark
+  public void wordTokenizer()
+    {
+    wordTokenizer.reset( texts[ next() ].getString( 0 ) );
+
+    String word;
+
+    while( ( word = wordTokenizer.next() ) != null )
+      blackhole.consume( word );
+    }
+
+  @Benchmark
+  public void pageWordCounter()
+    {
+    // each page has its own url, so the counts of the previous page are emitted
+    pageWordCounter.operate( urlTexts[ next() ] );
+    }
+  }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+import org.apache.hadoop.util.NativeCodeLoader;
+
+/**
+ * Class Codecs configures the compression of the sequence files the samples write, and of the map output.
+ * <p/>
+ * A codec is either given by name, or read from the "samples.sequencefile.codec" property, and may be "none",
+ * "default", "gzip", "bzip2" or the class name of any other {@link CompressionCodec}. When neither is set the
+ * "default" zlib codec is used. Compressed files are read back like any other sequence file.
+ * <p/>
+ * Sequence files and map output can only be written with "gzip" when the native Hadoop library is loaded, "default"
+ * compresses with zlib too, without the gzip header, and works either way.
+ */
+public class Codecs
+  {
+  public static final String CODEC = "samples.sequencefile.codec";
+
+  public static final String NONE = "none";
+  public static final String DEFAULT = "default";
+  public static final String GZIP = "gzip";
+  public static final String BZIP2 = "bzip2";
+
+  /**
+   * Method setOutputCompression block compresses the sequence files written with the given job.
+   *
+   * @param conf  of type JobConf
+   * @param codec of type String, the codec name, or null to use the "samples.sequencefile.codec" property
+   */
+  public static void setOutputCompression( JobConf conf, String codec )
+    {
+    Class<? extends CompressionCodec> codecClass = getWritableCodecClass( codec != null ? codec : conf.get( CODEC, DEFAULT ) );
+
+    if( codecClass == null )
+      {
+      FileOutputFormat.setCompressOutput( conf, false );
+      return;
+      }
+
+    // block compression compresses runs of keys and values together, far better than one record at a time
+    FileOutputFormat.setCompressOutput( conf, true );
+    FileOutputFormat.setOutputCompressorClass( conf, codecClass );
+    SequenceFileOutputFormat.setOutputCompressionType( conf, CompressionType.BLOCK );
+    }
+
+  /**
+   * Method setCodec sets the codec used by every sequence file not given one of its own.
+   *
+   * @param properties of type Map<Object, Object>
+   * @param codec      of type String
+   */
+  public static void setCodec( Map<Object, Object> properties, String codec )
+    {
+    getWritableCodecClass( codec );
+    properties.put( CODEC, codec );
+    }
+
+  /**
+   * Method getAvailableCodecs returns the named codecs sequence files and map output can be written with, "gzip" only
+   * if the native Hadoop library is loaded.
+   *
+   * @return String[]
+   */
+  public static String[] getAvailableCodecs()
+    {
+    List<String> codecs = new ArrayList<String>();
+
+    codecs.add( NONE );
+    codecs.add( DEFAULT );
+
+    if( NativeCodeLoader.isNativeCodeLoaded() )
+      codecs.add( GZIP );
+
+    codecs.add( BZIP2 );
+
+    return codecs.toArray( new String[ codecs.size() ] );
+    }
+
+  /**
+   * Method getWritableCodecClass returns the codec class of the given name, like {@link #getCodecClass(String)}, but
+   * fails for "gzip" when the native Hadoop library is not loaded, before any job runs, as neither the sequence file
+   * nor the map output writer accept the pure java gzip codec.
+   *
+   * @param codec of type String
+   * @return Class<? extends CompressionCodec>
+   */
+  public static Class<? extends CompressionCodec> getWritableCodecClass( String codec )
+    {
+    Class<? extends CompressionCodec> codecClass = getCodecClass( codec );
+
+    if( codecClass != null && GzipCodec.class.isAssignableFrom( codecClass ) && !NativeCodeLoader.isNativeCodeLoaded() )
+      throw new IllegalArgumentException( "sequence files and map output can only be written with " + codec + " when the native hadoop library is loaded, use '" + DEFAULT + "' instead" );
+
+    return codecClass;
+    }
+
+  /**
+   * Method setMapOutputCodec compresses the intermediate map output with the given codec, "none" disables it.
+   *
+   * @param properties of type Map<Object, Object>
+   * @param codec      of type String
+   */
+  public static void setMapOutputCodec( Map<Object, Object> properties, String codec )
+    {
+    Class<? extends CompressionCodec> codecClass = getWritableCodecClass( codec );
+
+    properties.put( "mapred.compress.map.output", Boolean.toString( codecClass != null ) );
+
+    if( codecClass != null )
+      properties.put( "mapred.map.output.compression.codec", codecClass.getName() );
+    }
+
+  /**
+   * Method getCodecClass returns the codec class of the given name, or null for "none".
+   *
+   * @param codec of type String
+   * @return Class<? extends CompressionCodec>
+   */
+  public static Class<? extends CompressionCodec> getCodecClass( String codec )
+    {
+    if( NONE.equals( codec ) )
+      return null;
+
+    if( DEFAULT.equals( codec ) )
+      return DefaultCodec.class;
+
+    if( GZIP.equals( codec ) )
+      return GzipCodec.class;
+
+    if( BZIP2.equals( codec ) )
+      return BZip2Codec.class;
+
+    try
+      {
+      return Class.forName( codec ).asSubclass( CompressionCodec.class );
+      }
+    catch( ClassNotFoundException exception )
+      {
+      throw new IllegalArgumentException( "unknown codec: " + codec + ", must be '" + NONE + "', '" + DEFAULT + "', '" + GZIP + "', '" + BZIP2 + "' or a codec class name" );
+      }
+    catch( ClassCastException exception )
+      {
+      throw new IllegalArgumentException( "not a codec: " + codec );
+      }
+    }
+  }
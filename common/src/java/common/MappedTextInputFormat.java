@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.JobConfigurable;
+import org.apache.hadoop.mapred.LineRecordReader;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+/**
+ * Class MappedTextInputFormat reads the lines of uncompressed local files by memory mapping each split, instead of
+ * streaming them through the local FileSystem into a Text per line. Only the split is mapped, and as much after it as
+ * its last line needs.
+ * <p/>
+ * Files are split like any other, and lines are assigned to splits like TextInputFormat does, a split skips the line
+ * it starts in, and reads the line that crosses its end, so the keys, the byte offsets of the lines, are the same.
+ * Each value is a {@link Line}, a view of the mapped split, no bytes are copied until the line is decoded.
+ * <p/>
+ * Compressed files, and files on other file systems, cannot be mapped, they are read with a LineRecordReader, like
+ * TextInputFormat does, and each Text handed out as a Line. Compressed files are not split.
+ * <p/>
+ * If {@link #RANGE_START} or {@link #RANGE_END} are set, only the lines starting in [start, end) are read, the splits
+ * are clipped to the range so nothing before or after it is read. The start must be the start of a line.
+ */
+public class MappedTextInputFormat extends FileInputFormat<LongWritable, MappedTextInputFormat.Line> implements JobConfigurable
+  {
+  public static final String RANGE_START = "mapped.text.range.start";
+  public static final String RANGE_END = "mapped.text.range.end";
+
+  private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+  private CompressionCodecFactory codecs;
+
+  /**
+   * Class Line is a view of the bytes of a line, valid until the next line is read into it.
+   */
+  public static class Line
+    {
+    private ByteBuffer buffer;
+    private ByteBuffer view;
+    private int start;
+    private int length;
+
+    // the Text a TextRecordReader reads this line into, so every Line owns its bytes
+    private Text text;
+
+    void set( ByteBuffer buffer, int start, int length )
+      {
+      // the view keeps the position and limit of the reader's buffer untouched
+      if( buffer != this.buffer )
+        {
+        this.buffer = buffer;
+        this.view = buffer.duplicate();
+        }
+
+      this.start = start;
+      this.length = length;
+      }
+
+    Text getText()
+      {
+      if( text == null )
+        text = new Text();
+
+      return text;
+      }
+
+    void set( Text text )
+      {
+      // the Text only re-allocates its bytes for a longer line
+      if( buffer != null && buffer.hasArray() && buffer.array() == text.getBytes() )
+        set( buffer, 0, text.getLength() );
+      else
+        set( ByteBuffer.wrap( text.getBytes() ), 0, text.getLength() );
+      }
+
+    public int getLength()
+      {
+      return length;
+      }
+
+    /**
+     * Method getBytes returns a buffer positioned on the first byte of the line, and limited after its last, no bytes
+     * are copied. The buffer is re-used for every line.
+     *
+     * @return ByteBuffer
+     */
+    public ByteBuffer getBytes()
+      {
+      view.clear();
+      view.position( start );
+      view.limit( start + length );
+
+      return view;
+      }
+
+    @Override
+    public String toString()
+      {
+      return UTF8.decode( getBytes() ).toString();
+      }
+    }
+
+  public void configure( JobConf conf )
+    {
+    codecs = new CompressionCodecFactory( conf );
+    }
+
+  @Override
+  protected boolean isSplitable( FileSystem fileSystem, Path file )
+    {
+    return codecs.getCodec( file ) == null;
+    }
+
+  @Override
+  public InputSplit[] getSplits( JobConf job, int numSplits ) throws IOException
+    {
+    InputSplit[] splits = super.getSplits( job, numSplits );
+    long start = job.getLong( RANGE_START, 0 );
+    long end = job.getLong( RANGE_END, Long.MAX_VALUE );
+
+    if( start == 0 && end == Long.MAX_VALUE )
+      return splits;
+
+    List<InputSplit> clipped = new ArrayList<InputSplit>();
+
+    for( InputSplit split : splits )
+      {
+      FileSplit fileSplit = (FileSplit) split;
+
+      // the range is in uncompressed bytes
+      if( codecs.getCodec( fileSplit.getPath() ) != null )
+        throw new IOException( "a byte range cannot be read from a compressed file: " + fileSplit.getPath() );
+
+      long splitStart = Math.max( fileSplit.getStart(), start );
+      long splitEnd = Math.min( fileSplit.getStart() + fileSplit.getLength(), end );
+
+      if( splitStart < splitEnd )
+        clipped.add( new FileSplit( fileSplit.getPath(), splitStart, splitEnd - splitStart, fileSplit.getLocations() ) );
+      }
+
+    return clipped.toArray( new InputSplit[ clipped.size() ] );
+    }
+
+  @Override
+  public RecordReader<LongWritable, Line> getRecordReader( InputSplit split, JobConf job, Reporter reporter ) throws IOException
+    {
+    FileSplit fileSplit = (FileSplit) split;
+    Path path = fileSplit.getPath();
+
+    reporter.setStatus( fileSplit.toString() );
+
+    boolean local = "file".equals( path.getFileSystem( job ).getUri().getScheme() );
+
+    if( !local || new CompressionCodecFactory( job ).getCodec( path ) != null )
+      return new TextRecordReader( new LineRecordReader( job, fileSplit ) );
+
+    // the mapping needs a local file, Lfs paths may be relative to the working directory
+    return new MappedLineRecordReader( FileSystem.getLocal( job ).pathToFile( path ), fileSplit.getStart(), fileSplit.getLength() );
+    }
+
+  // hands out each line of a LineRecordReader as a Line over a Text of its own
+  static class TextRecordReader implements RecordReader<LongWritable, Line>
+    {
+    private final LineRecordReader reader;
+
+    TextRecordReader( LineRecordReader reader )
+      {
+      this.reader = reader;
+      }
+
+    public boolean next( LongWritable key, Line value ) throws IOException
+      {
+      Text text = value.getText();
+
+      if( !reader.next( key, text ) )
+        return false;
+
+      value.set( text );
+
+      return true;
+      }
+
+    public LongWritable createKey()
+      {
+      return reader.createKey();
+      }
+
+    public Line createValue()
+      {
+      return new Line();
+      }
+
+    public long getPos() throws IOException
+      {
+      return reader.getPos();
+      }
+
+    public float getProgress() throws IOException
+      {
+      return reader.getProgress();
+      }
+
+    public void close() throws IOException
+      {
+      reader.close();
+      }
+    }
+
+  static class MappedLineRecordReader implements RecordReader<LongWritable, Line>
+    {
+    // mapped past the end of the split to finish its last line, doubled whenever a line runs past the mapping
+    static final int SLACK = 64 * 1024;
+
+    private final File file;
+    private final long fileLength;
+    private final long mapStart;
+    private final int begin;
+    private final int end;
+
+    private long slack = SLACK;
+    private ByteBuffer buffer;
+    private int limit;
+    private int pos;
+
+    MappedLineRecordReader( File file, long start, long length ) throws IOException
+      {
+      this.file = file;
+      this.fileLength = file.length();
+
+      // back up one byte so a split starting right after a line terminator does not skip a whole line
+      mapStart = start == 0 ? 0 : start - 1;
+
+      if( start + length - mapStart > Integer.MAX_VALUE )
+        throw new IOException( "split too large to map: " + length + " bytes at " + start + " in " + file );
+
+      end = (int) ( start + length - mapStart );
+
+      map();
+
+      // the line this split starts in belongs to the previous split
+      pos = start == 0 ? 0 : next( 0, true );
+      begin = pos;
+      }
+
+    // maps the split and the slack after it, lines already handed out keep the previous mapping alive
+    private void map() throws IOException
+      {
+      long mapLength = Math.min( fileLength - mapStart, end + slack );
+
+      if( mapLength > Integer.MAX_VALUE )
+        throw new IOException( "line too long to map at " + ( mapStart + limit ) + " in " + file );
+
+      RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+
+      try
+        {
+        // the mapping stays valid once the channel is closed
+        buffer = randomAccessFile.getChannel().map( FileChannel.MapMode.READ_ONLY, mapStart, mapLength );
+        }
+      finally
+        {
+        randomAccessFile.close();
+        }
+
+      limit = buffer.limit();
+      }
+
+    // maps more of the file, false if the mapping already reaches its end
+    private boolean extend() throws IOException
+      {
+      if( mapStart + limit >= fileLength )
+        return false;
+
+      slack *= 2;
+      map();
+
+      return true;
+      }
+
+    // the position of the next line terminator, or of the next line if skipTerminator
+    private int next( int pos, boolean skipTerminator ) throws IOException
+      {
+      do
+        {
+        while( pos < limit )
+          {
+          byte current = buffer.get( pos );
+
+          if( current == '\n' || current == '\r' )
+            break;
+
+          pos++;
+          }
+        }
+      while( pos == limit && extend() );
+
+      if( !skipTerminator || pos == limit )
+        return pos;
+
+      if( buffer.get( pos ) == '\r' && pos + 1 == limit )
+        extend();
+
+      if( buffer.get( pos ) == '\r' && pos + 1 < limit && buffer.get( pos + 1 ) == '\n' )
+        return pos + 2;
+
+      return pos + 1;
+      }
+
+    public boolean next( LongWritable key, Line value ) throws IOException
+      {
+      // lines starting at or after the end belong to the next split
+      if( pos >= end || pos >= limit )
+        return false;
+
+      int lineStart = pos;
+      int lineEnd = next( pos, false );
+
+      pos = next( lineEnd, true );
+
+      key.set( mapStart + lineStart );
+      value.set( buffer, lineStart, lineEnd - lineStart );
+
+      return true;
+      }
+
+    public LongWritable createKey()
+      {
+      return new LongWritable();
+      }
+
+    public Line createValue()
+      {
+      return new Line();
+      }
+
+    public long getPos() throws IOException
+      {
+      return mapStart + pos;
+      }
+
+    public float getProgress() throws IOException
+      {
+      if( end <= begin )
+        return 1.0f;
+
+      return Math.min( 1.0f, ( pos - begin ) / (float) ( end - begin ) );
+      }
+
+    public void close() throws IOException
+      {
+      // lines already handed out keep the mapping alive
+      buffer = null;
+      }
+    }
+  }
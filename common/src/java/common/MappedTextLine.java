@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+import cascading.scheme.TextLine;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.JobConf;
+
+/**
+ * Class MappedTextLine is a {@link TextLine} that reads local files through the {@link MappedTextInputFormat}, see
+ * {@link #sourceInit(Tap, JobConf)}. Compressed and non local files are read like TextLine reads them. Sinking is
+ * unchanged.
+ * <p/>
+ * As with TextLine, two source fields are read as the byte offset and the line, and one as the line. Each line is
+ * decoded as UTF-8 straight from the mapped file into a re-used char buffer, malformed bytes are replaced, as Text
+ * does.
+ * <p/>
+ * Given a byte range, only the lines starting in it are read, see {@link MappedTextInputFormat#RANGE_START}.
+ */
+public class MappedTextLine extends TextLine
+  {
+  private final long start;
+  private final long end;
+
+  private transient CharsetDecoder decoder;
+  private transient CharBuffer chars;
+
+  public MappedTextLine()
+    {
+    this( new Fields( "offset", "line" ) );
+    }
+
+  public MappedTextLine( Fields sourceFields )
+    {
+    this( sourceFields, 0, Long.MAX_VALUE );
+    }
+
+  /**
+   * Constructor MappedTextLine creates a new MappedTextLine instance reading only the lines starting in [start, end).
+   *
+   * @param sourceFields of type Fields
+   * @param start        of type long, the offset of the first line to read
+   * @param end          of type long
+   */
+  public MappedTextLine( Fields sourceFields, long start, long end )
+    {
+    super( sourceFields );
+    this.start = start;
+    this.end = end;
+    }
+
+  @Override
+  public void sourceInit( Tap tap, JobConf conf )
+    {
+    super.sourceInit( tap, conf );
+
+    conf.setInputFormat( MappedTextInputFormat.class );
+
+    // every source tap of a job gets its own conf, so each may read its own range
+    if( start != 0 || end != Long.MAX_VALUE )
+      {
+      conf.setLong( MappedTextInputFormat.RANGE_START, start );
+      conf.setLong( MappedTextInputFormat.RANGE_END, end );
+      }
+    }
+
+  @Override
+  public Tuple source( Object key, Object value )
+    {
+    Tuple tuple = new Tuple();
+
+    if( getSourceFields().size() == 2 )
+      tuple.add( ( (LongWritable) key ).get() );
+
+    tuple.add( decode( (MappedTextInputFormat.Line) value ) );
+
+    return tuple;
+    }
+
+  private String decode( MappedTextInputFormat.Line line )
+    {
+    if( decoder == null )
+      {
+      decoder = Charset.forName( "UTF-8" ).newDecoder();
+      decoder.onMalformedInput( CodingErrorAction.REPLACE );
+      decoder.onUnmappableCharacter( CodingErrorAction.REPLACE );
+      }
+
+    // a UTF-8 line never decodes to more chars than it has bytes
+    if( chars == null || chars.capacity() < line.getLength() )
+      chars = CharBuffer.allocate( Math.max( line.getLength(), 256 ) );
+
+    decoder.reset();
+    chars.clear();
+
+    // replacing malformed bytes, the chars always fit
+    decoder.decode( line.getBytes(), chars, true );
+    decoder.flush( chars );
+    chars.flip();
+
+    return chars.toString();
+    }
+  }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import java.io.PrintStream;
+import java.io.Serializable;
+import java.util.Collection;
+
+import cascading.flow.Flow;
+import cascading.flow.FlowProcess;
+import cascading.stats.FlowStats;
+
+/**
+ * Class Meter keeps the counters of a {@link MeteredFunction} or {@link MeteredFilter}, and reports them as Hadoop
+ * counters in the "Metered" group, named after the operation, e.g. "RegexParser tuples".
+ * <p/>
+ * Every tuple is counted, but only one call in every sample interval is timed, so the cost on the hot path is a
+ * counter increment, and a pair of System.nanoTime() calls now and then. Counters are only published every
+ * {@link #REPORT_INTERVAL} tuples and on cleanup.
+ */
+public class Meter implements Serializable
+  {
+  public static final String GROUP = "Metered";
+
+  public static final String TUPLES = " tuples";
+  public static final String SAMPLED = " sampled";
+  public static final String SAMPLED_NANOS = " sampled nanos";
+  public static final String REMOVED = " removed";
+  public static final String EXCEPTIONS = " exceptions";
+
+  public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+  static final int REPORT_INTERVAL = 1000;
+
+  private final String name;
+  private final int sampleInterval;
+
+  private transient long tuples;
+  private transient long sampled;
+  private transient long sampledNanos;
+  private transient long removed;
+  private transient long exceptions;
+
+  public Meter( String name, int sampleInterval )
+    {
+    if( sampleInterval < 1 )
+      throw new IllegalArgumentException( "sampleInterval must be positive, was: " + sampleInterval );
+
+    this.name = name;
+    this.sampleInterval = sampleInterval;
+    }
+
+  public String getName()
+    {
+    return name;
+    }
+
+  /**
+   * Method next counts a tuple, and returns true if this call should be timed.
+   *
+   * @return boolean
+   */
+  boolean next()
+    {
+    return ++tuples % sampleInterval == 0;
+    }
+
+  void sample( long nanos )
+    {
+    sampled++;
+    sampledNanos += nanos;
+    }
+
+  void removed()
+    {
+    removed++;
+    }
+
+  void exception()
+    {
+    exceptions++;
+    }
+
+  void report( FlowProcess flowProcess, boolean force )
+    {
+    // counter amounts are ints, so large timings are published early
+    if( !force && tuples < REPORT_INTERVAL && sampledNanos < Integer.MAX_VALUE / 2 )
+      return;
+
+    increment( flowProcess, TUPLES, tuples );
+    increment( flowProcess, SAMPLED, sampled );
+    increment( flowProcess, SAMPLED_NANOS, sampledNanos );
+    increment( flowProcess, REMOVED, removed );
+    increment( flowProcess, EXCEPTIONS, exceptions );
+
+    tuples = 0;
+    sampled = 0;
+    sampledNanos = 0;
+    removed = 0;
+    exceptions = 0;
+    }
+
+  private void increment( FlowProcess flowProcess, String counter, long amount )
+    {
+    if( amount != 0 )
+      flowProcess.increment( GROUP, name + counter, (int) amount );
+    }
+
+  /**
+   * Method printSummary prints the tuples, the sampled nanoseconds per tuple, the removed tuples and the exceptions
+   * of every metered operation in the given completed flows.
+   *
+   * @param out   of type PrintStream
+   * @param flows of type Flow...
+   */
+  public static void printSummary( PrintStream out, Flow... flows )
+    {
+    out.println( "flow\toperation\ttuples\tns/tuple\tremoved\texceptions" );
+
+    for( Flow flow : flows )
+      {
+      FlowStats flowStats = flow.getFlowStats();
+      Collection<String> counters = flowStats.getCountersFor( GROUP );
+
+      if( counters == null )
+        continue;
+
+      for( String counter : counters )
+        {
+        if( !counter.endsWith( TUPLES ) )
+          continue;
+
+        String operation = counter.substring( 0, counter.length() - TUPLES.length() );
+        long sampled = flowStats.getCounterValue( GROUP, operation + SAMPLED );
+        long nanos = flowStats.getCounterValue( GROUP, operation + SAMPLED_NANOS );
+
+        out.println( flow.getName() + "\t" + operation + "\t" + flowStats.getCounterValue( GROUP, counter ) + "\t" + ( sampled == 0 ? "-" : Long.toString( nanos / sampled ) ) + "\t" + flowStats.getCounterValue( GROUP, operation + REMOVED ) + "\t" + flowStats.getCounterValue( GROUP, operation + EXCEPTIONS ) );
+        }
+      }
+    }
+  }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.operation.OperationCall;
+
+/**
+ * Class MeteredFilter wraps any {@link Filter}, counting its tuples, the tuples it removes and its exceptions, and
+ * timing a sample of its calls, see {@link Meter} for the counters.
+ */
+public class MeteredFilter<Context> extends BaseOperation<Context> implements Filter<Context>
+  {
+  private final Filter<Context> filter;
+  private final Meter meter;
+
+  /**
+   * Method meter wraps the given filter, inferring its context type, for filters, like the Cascading regex
+   * operations, whose context type is an implementation detail.
+   *
+   * @param filter of type Filter<Context>
+   * @return MeteredFilter<Context>
+   */
+  public static <Context> MeteredFilter<Context> meter( Filter<Context> filter )
+    {
+    return new MeteredFilter<Context>( filter );
+    }
+
+  public MeteredFilter( Filter<Context> filter )
+    {
+    this( filter.getClass().getSimpleName(), filter );
+    }
+
+  public MeteredFilter( String name, Filter<Context> filter )
+    {
+    this( name, filter, Meter.DEFAULT_SAMPLE_INTERVAL );
+    }
+
+  /**
+   * Constructor MeteredFilter creates a new MeteredFilter instance.
+   *
+   * @param name           of type String, the counter name prefix
+   * @param filter         of type Filter, the filter to meter
+   * @param sampleInterval of type int, one call in sampleInterval is timed
+   */
+  public MeteredFilter( String name, Filter<Context> filter, int sampleInterval )
+    {
+    super( filter.getNumArgs() );
+    this.filter = filter;
+    this.meter = new Meter( name, sampleInterval );
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    return filter.isSafe();
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    filter.prepare( flowProcess, operationCall );
+    }
+
+  public boolean isRemove( FlowProcess flowProcess, FilterCall<Context> filterCall )
+    {
+    boolean remove;
+
+    try
+      {
+      if( meter.next() )
+        {
+        long startTime = System.nanoTime();
+
+        remove = filter.isRemove( flowProcess, filterCall );
+
+        meter.sample( System.nanoTime() - startTime );
+        }
+      else
+        {
+        remove = filter.isRemove( flowProcess, filterCall );
+        }
+      }
+    catch( RuntimeException exception )
+      {
+      meter.exception();
+      meter.report( flowProcess, true );
+      throw exception;
+      }
+
+    if( remove )
+      meter.removed();
+
+    meter.report( flowProcess, false );
+
+    return remove;
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    filter.cleanup( flowProcess, operationCall );
+    meter.report( flowProcess, true );
+    }
+  }
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package common;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+
+/**
+ * Class MeteredFunction wraps any {@link Function}, counting its tuples and exceptions, and timing a sample of its
+ * calls, see {@link Meter} for the counters. The wrapped function sees the same calls, context and collector.
+ */
+public class MeteredFunction<Context> extends BaseOperation<Context> implements Function<Context>
+  {
+  private final Function<Context> function;
+  private final Meter meter;
+
+  /**
+   * Method meter wraps the given function, inferring its context type, for functions, like the Cascading regex
+   * operations, whose context type is an implementation detail.
+   *
+   * @param function of type Function<Context>
+   * @return MeteredFunction<Context>
+   */
+  public static <Context> MeteredFunction<Context> meter( Function<Context> function )
+    {
+    return new MeteredFunction<Context>( function );
+    }
+
+  public MeteredFunction( Function<Context> function )
+    {
+    this( function.getClass().getSimpleName(), function );
+    }
+
+  public MeteredFunction( String name, Function<Context> function )
+    {
+    this( name, function, Meter.DEFAULT_SAMPLE_INTERVAL );
+    }
+
+  /**
+   * Constructor MeteredFunction creates a new MeteredFunction instance.
+   *
+   * @param name           of type String, the counter name prefix
+   * @param function       of type Function, the function to meter
+   * @param sampleInterval of type int, one call in sampleInterval is timed
+   */
+  public MeteredFunction( String name, Function<Context> function, int sampleInterval )
+    {
+    super( function.getNumArgs(), function.getFieldDeclaration() );
+    this.function = function;
+    this.meter = new Meter( name, sampleInterval );
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    return function.isSafe();
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    function.prepare( flowProcess, operationCall );
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    try
+      {
+      if( meter.next() )
+        {
+        long startTime = System.nanoTime();
+
+        function.operate( flowProcess, functionCall );
+
+        meter.sample( System.nanoTime() - startTime );
+        }
+      else
+        {
+        function.operate( flowProcess, functionCall );
+        }
+      }
+    catch( RuntimeException exception )
+      {
+      meter.exception();
+      meter.report( flowProcess, true );
+      throw exception;
+      }
+
+    meter.report( flowProcess, false );
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    // the function may still emit on cleanup, which is not timed
+    function.cleanup( flowProcess, operationCall );
+    meter.report( flowProcess, true );
+    }
+  }
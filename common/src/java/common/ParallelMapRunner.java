@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapRunnable;
+import org.apache.hadoop.mapred.MapRunner;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Class ParallelMapRunner runs the mapper of a map task on a pool of worker threads, so a local job, whose runner
+ * executes one map task at a time, uses more than one core.
+ * <p/>
+ * The task thread reads the split in batches of records, and hands each batch to the next free worker. Every worker
+ * has a mapper instance of its own, configured like the task's, so the mapper need not be thread safe. What the
+ * workers collect is buffered per batch and passed on in the order the batches were read, so the map output is the
+ * same as a single mapper would collect, except for what the mappers collect when closed, e.g. partial aggregates,
+ * which comes once per worker, like it would from as many map tasks. Writable keys and values are copied when
+ * collected, as mappers and schemes may reuse them.
+ * <p/>
+ * With fewer than two threads the task is run by the default {@link MapRunner}.
+ */
+public class ParallelMapRunner<K1, V1, K2, V2> implements MapRunnable<K1, V1, K2, V2>
+  {
+  public static final String THREADS = "samples.parallel.threads";
+  public static final String BATCH_SIZE = "samples.parallel.batch.size";
+
+  public static final int DEFAULT_BATCH_SIZE = 1024;
+
+  private JobConf conf;
+  private int threads;
+  private int batchSize;
+
+  /**
+   * Method setLocalParallelism runs every job in this JVM against the local file system, each map task on the given
+   * number of worker threads.
+   * <p/>
+   * Independent flows of a cascade, and independent steps of a flow, run at the same time either way.
+   *
+   * @param properties of type Map<Object, Object>
+   * @param threads    of type int
+   */
+  public static void setLocalParallelism( Map<Object, Object> properties, int threads )
+    {
+    if( threads < 1 )
+      throw new IllegalArgumentException( "threads must be positive, was: " + threads );
+
+    properties.put( "mapred.job.tracker", "local" );
+    properties.put( "fs.default.name", "file:///" );
+    properties.put( "mapred.map.runner.class", ParallelMapRunner.class.getName() );
+    properties.put( THREADS, Integer.toString( threads ) );
+    }
+
+  public void configure( JobConf conf )
+    {
+    this.conf = conf;
+    this.threads = conf.getInt( THREADS, 1 );
+    this.batchSize = conf.getInt( BATCH_SIZE, DEFAULT_BATCH_SIZE );
+
+    if( batchSize < 1 )
+      throw new IllegalArgumentException( BATCH_SIZE + " must be positive, was: " + batchSize );
+    }
+
+  public void run( RecordReader<K1, V1> reader, OutputCollector<K2, V2> output, Reporter reporter ) throws IOException
+    {
+    if( threads < 2 )
+      {
+      MapRunner<K1, V1, K2, V2> runner = new MapRunner<K1, V1, K2, V2>();
+
+      runner.configure( conf );
+      runner.run( reader, output, reporter );
+      return;
+      }
+
+    BlockingQueue<Worker> idle = new ArrayBlockingQueue<Worker>( threads );
+    List<Worker> workers = new ArrayList<Worker>( threads );
+
+    for( int i = 0; i < threads; i++ )
+      workers.add( new Worker() );
+
+    idle.addAll( workers );
+
+    ExecutorService executor = Executors.newFixedThreadPool( threads );
+
+    try
+      {
+      // bounds the batches held in memory, the reader may run ahead of the slowest worker by this many
+      LinkedList<Future<List<Object>>> pending = new LinkedList<Future<List<Object>>>();
+
+      while( true )
+        {
+        Batch batch = read( reader );
+
+        if( batch.keys.isEmpty() )
+          break;
+
+        pending.add( executor.submit( new Task( batch, idle, reporter ) ) );
+
+        if( pending.size() >= threads * 2 )
+          emit( pending.removeFirst(), output );
+        }
+
+      while( !pending.isEmpty() )
+        emit( pending.removeFirst(), output );
+      }
+    finally
+      {
+      executor.shutdownNow();
+      }
+
+    // what the mappers collect when closed comes last, in worker order
+    for( Worker worker : workers )
+      {
+      worker.collector.buffer = new ArrayList<Object>();
+      worker.mapper.close();
+      emit( worker.collector.buffer, output );
+      }
+    }
+
+  private Batch read( RecordReader<K1, V1> reader ) throws IOException
+    {
+    Batch batch = new Batch();
+
+    // a new key and value per record, the batch is mapped after the reader moved on
+    while( batch.keys.size() < batchSize )
+      {
+      K1 key = reader.createKey();
+      V1 value = reader.createValue();
+
+      if( !reader.next( key, value ) )
+        break;
+
+      batch.keys.add( key );
+      batch.values.add( value );
+      }
+
+    return batch;
+    }
+
+  private void emit( Future<List<Object>> future, OutputCollector<K2, V2> output ) throws IOException
+    {
+    try
+      {
+      emit( future.get(), output );
+      }
+    catch( InterruptedException exception )
+      {
+      throw (IOException) new IOException( "interrupted while mapping" ).initCause( exception );
+      }
+    catch( ExecutionException exception )
+      {
+      Throwable cause = exception.getCause();
+
+      if( cause instanceof IOException )
+        throw (IOException) cause;
+
+      if( cause instanceof RuntimeException )
+        throw (RuntimeException) cause;
+
+      if( cause instanceof Error )
+        throw (Error) cause;
+
+      throw new RuntimeException( cause );
+      }
+    }
+
+  @SuppressWarnings("unchecked")
+  private void emit( List<Object> buffer, OutputCollector<K2, V2> output ) throws IOException
+    {
+    for( int i = 0; i < buffer.size(); i += 2 )
+      output.collect( (K2) buffer.get( i ), (V2) buffer.get( i + 1 ) );
+    }
+
+  private class Batch
+    {
+    final List<K1> keys = new ArrayList<K1>( batchSize );
+    final List<V1> values = new ArrayList<V1>( batchSize );
+    }
+
+  private class Worker
+    {
+    final Mapper<K1, V1, K2, V2> mapper;
+    final BufferCollector collector = new BufferCollector();
+
+    @SuppressWarnings("unchecked")
+    Worker()
+      {
+      // configured with the task's conf, like the default runner configures its single mapper
+      this.mapper = ReflectionUtils.newInstance( conf.getMapperClass(), conf );
+      }
+    }
+
+  private class Task implements Callable<List<Object>>
+    {
+    private final Batch batch;
+    private final BlockingQueue<Worker> idle;
+    private final Reporter reporter;
+
+    Task( Batch batch, BlockingQueue<Worker> idle, Reporter reporter )
+      {
+      this.batch = batch;
+      this.idle = idle;
+      this.reporter = reporter;
+      }
+
+    public List<Object> call() throws Exception
+      {
+      Worker worker = idle.take();
+
+      try
+        {
+        // the mapper keeps the collector, it may collect a previous record's output with this batch
+        worker.collector.buffer = new ArrayList<Object>( batch.keys.size() * 2 );
+
+        for( int i = 0; i < batch.keys.size(); i++ )
+          worker.mapper.map( batch.keys.get( i ), batch.values.get( i ), worker.collector, reporter );
+
+        return worker.collector.buffer;
+        }
+      finally
+        {
+        idle.put( worker );
+        }
+      }
+    }
+
+  private class BufferCollector implements OutputCollector<K2, V2>
+    {
+    List<Object> buffer;
+
+    public void collect( K2 key, V2 value ) throws IOException
+      {
+      buffer.add( copy( key ) );
+      buffer.add( copy( value ) );
+      }
+
+    private Object copy( Object object )
+      {
+      if( !( object instanceof Writable ) || object instanceof NullWritable )
+        return object;
+
+      return WritableUtils.clone( (Writable) object, conf );
+      }
+    }
+  }
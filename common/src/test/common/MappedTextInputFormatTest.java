@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package common;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.LineRecordReader;
+import org.apache.hadoop.mapred.RecordReader;
+
+/**
+ * Checks that the readers of {@link MappedTextInputFormat} read the same lines, at the same offsets, as a
+ * {@link LineRecordReader} reading the same splits.
+ */
+public class MappedTextInputFormatTest extends TestCase
+  {
+  private static final int[] SPLIT_SIZES = {1, 2, 3, 5, 17, 100, 4096, MappedTextInputFormat.MappedLineRecordReader.SLACK};
+
+  private File file;
+
+  public MappedTextInputFormatTest()
+    {
+    super( "mapped text input format tests" );
+    }
+
+  @Override
+  protected void setUp() throws Exception
+    {
+    file = File.createTempFile( "mapped", ".txt" );
+    }
+
+  @Override
+  protected void tearDown() throws Exception
+    {
+    file.delete();
+    }
+
+  public void testLineTerminators() throws IOException
+    {
+    assertSameLines( "a\nbb\n\nccc\n" );
+    assertSameLines( "a\r\nbb\r\n\r\nccc\r\n" );
+    assertSameLines( "a\rbb\r\rccc\r" );
+    assertSameLines( "a\r\n\rbb\n\r\r\nccc" );
+    assertSameLines( "\n\n\r\n\r" );
+    assertSameLines( "no terminator" );
+    assertSameLines( "" );
+    }
+
+  public void testMultiByteCharacters() throws IOException
+    {
+    assertSameLines( "caf\u00e9\n\u65e5\u672c\u8a9e\r\n\ud83d\ude00 \u00fc\u00f6\u00e4\n" );
+    }
+
+  public void testSampleData() throws IOException
+    {
+    File sample = new File( "../loganalysis/data/apache.200.txt" );
+
+    if( sample.exists() )
+      assertSameLines( sample );
+    }
+
+  // lines longer than the slack mapped after a split are mapped by extending the mapping
+  public void testLongLines() throws IOException
+    {
+    int slack = MappedTextInputFormat.MappedLineRecordReader.SLACK;
+    StringBuilder text = new StringBuilder();
+
+    text.append( "short\n" );
+    text.append( line( 'a', slack * 5 ) ).append( "\r\n" );
+    text.append( "short\r" );
+    text.append( line( 'b', slack - 1 ) ).append( "\r" );
+    text.append( "\n" );
+    text.append( line( 'c', slack * 2 + 3 ) );
+
+    write( text.toString() );
+
+    for( int splitSize : new int[]{1000, slack - 1, slack, slack + 7, slack * 3} )
+      assertSameLines( file, splitSize );
+    }
+
+  public void testRandomLines() throws IOException
+    {
+    Random random = new Random( 0 );
+    String[] terminators = {"\n", "\r", "\r\n"};
+
+    for( int run = 0; run < 20; run++ )
+      {
+      StringBuilder text = new StringBuilder();
+
+      for( int lines = random.nextInt( 50 ); lines > 0; lines-- )
+        {
+        text.append( line( (char) ( 'a' + random.nextInt( 26 ) ), random.nextInt( 40 ) ) );
+        text.append( terminators[ random.nextInt( terminators.length ) ] );
+        }
+
+      if( random.nextBoolean() )
+        text.append( "last" );
+
+      assertSameLines( text.toString() );
+      }
+    }
+
+  // every Line handed out by the text reader keeps its own bytes, as the parallel map runner needs
+  public void testTextLinesOwnTheirBytes() throws IOException
+    {
+    write( "first line\nsecond, a longer line\nthird\n" );
+
+    RecordReader<LongWritable, MappedTextInputFormat.Line> reader = new MappedTextInputFormat.TextRecordReader( new LineRecordReader( new JobConf(), split( file, 0, file.length() ) ) );
+    List<MappedTextInputFormat.Line> lines = new ArrayList<MappedTextInputFormat.Line>();
+
+    try
+      {
+      while( true )
+        {
+        MappedTextInputFormat.Line line = reader.createValue();
+
+        if( !reader.next( reader.createKey(), line ) )
+          break;
+
+        lines.add( line );
+        }
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    assertEquals( "lines", 3, lines.size() );
+    assertEquals( "first line", lines.get( 0 ).toString() );
+    assertEquals( "second, a longer line", lines.get( 1 ).toString() );
+    assertEquals( "third", lines.get( 2 ).toString() );
+    }
+
+  private static String line( char character, int length )
+    {
+    StringBuilder line = new StringBuilder( length );
+
+    for( int i = 0; i < length; i++ )
+      line.append( character );
+
+    return line.toString();
+    }
+
+  private void write( String text ) throws IOException
+    {
+    OutputStream output = new FileOutputStream( file );
+
+    try
+      {
+      output.write( text.getBytes( "UTF-8" ) );
+      }
+    finally
+      {
+      output.close();
+      }
+    }
+
+  private void assertSameLines( String text ) throws IOException
+    {
+    write( text );
+    assertSameLines( file );
+    }
+
+  private static void assertSameLines( File file ) throws IOException
+    {
+    for( int splitSize : SPLIT_SIZES )
+      assertSameLines( file, splitSize );
+    }
+
+  // reads every split of the given size with both readers
+  private static void assertSameLines( File file, int splitSize ) throws IOException
+    {
+    long length = file.length();
+    List<String> expected = new ArrayList<String>();
+    List<String> result = new ArrayList<String>();
+
+    for( long start = 0; start < Math.max( length, 1 ); start += splitSize )
+      {
+      long splitLength = Math.min( splitSize, length - start );
+
+      expected.addAll( read( new LineRecordReader( new JobConf(), split( file, start, splitLength ) ) ) );
+      result.addAll( read( new MappedTextInputFormat.MappedLineRecordReader( file, start, splitLength ) ) );
+
+      assertEquals( "split of " + splitSize + " at " + start, expected, result );
+      }
+    }
+
+  private static FileSplit split( File file, long start, long length )
+    {
+    return new FileSplit( new Path( file.getAbsolutePath() ), start, length, (String[]) null );
+    }
+
+  private static <V> List<String> read( RecordReader<LongWritable, V> reader ) throws IOException
+    {
+    List<String> lines = new ArrayList<String>();
+    LongWritable key = reader.createKey();
+    V value = reader.createValue();
+
+    try
+      {
+      while( reader.next( key, value ) )
+        lines.add( key.get() + ":" + value );
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    return lines;
+    }
+  }
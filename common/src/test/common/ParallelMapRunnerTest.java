@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package common;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+
+/**
+ * Checks that the map output of a {@link ParallelMapRunner} is the map output of the default runner, whatever the
+ * threads and batch size.
+ */
+public class ParallelMapRunnerTest extends TestCase
+  {
+  private static final String CLOSED = "closed";
+
+  // emits every word of a line, reusing its key and value, and the lines it mapped when closed
+  public static class WordMapper extends MapReduceBase implements Mapper<LongWritable, Text, Text, LongWritable>
+    {
+    private final Text word = new Text();
+    private final LongWritable offset = new LongWritable();
+    private long lines;
+    private OutputCollector<Text, LongWritable> output;
+
+    public void map( LongWritable key, Text value, OutputCollector<Text, LongWritable> output, Reporter reporter ) throws IOException
+      {
+      this.output = output;
+      lines++;
+
+      if( value.toString().equals( "fail" ) )
+        throw new IllegalStateException( "failed at: " + key.get() );
+
+      for( String token : value.toString().split( " " ) )
+        {
+        word.set( token );
+        offset.set( key.get() );
+        output.collect( word, offset );
+        }
+      }
+
+    @Override
+    public void close() throws IOException
+      {
+      if( output == null )
+        return;
+
+      word.set( CLOSED );
+      offset.set( lines );
+      output.collect( word, offset );
+      }
+    }
+
+  public ParallelMapRunnerTest()
+    {
+    super( "parallel map runner tests" );
+    }
+
+  public void testSameOutput() throws IOException
+    {
+    List<String> lines = randomLines( 5000 );
+    List<String> expected = run( lines, 1, ParallelMapRunner.DEFAULT_BATCH_SIZE );
+
+    assertEquals( "lines", Arrays.asList( CLOSED + "=5000" ), closed( expected ) );
+
+    for( int threads : new int[]{2, 3, 8} )
+      {
+      for( int batchSize : new int[]{1, 7, 1024, 10000} )
+        {
+        List<String> result = run( lines, threads, batchSize );
+        List<String> closed = closed( result );
+
+        assertEquals( threads + " threads, batches of " + batchSize, expected, result );
+        // a worker that mapped no batch has nothing to collect when closed
+        assertTrue( threads + " threads, batches of " + batchSize + ", closed", closed.size() <= threads );
+        assertEquals( threads + " threads, batches of " + batchSize + ", lines", 5000, sum( closed ) );
+        }
+      }
+    }
+
+  public void testEmptyInput() throws IOException
+    {
+    assertTrue( "output", run( new ArrayList<String>(), 4, 16 ).isEmpty() );
+    }
+
+  public void testMapperFailure() throws IOException
+    {
+    List<String> lines = randomLines( 1000 );
+
+    lines.set( 700, "fail" );
+
+    try
+      {
+      run( lines, 4, 16 );
+      fail( "no failure" );
+      }
+    catch( IllegalStateException exception )
+      {
+      assertEquals( "failed at: 700", exception.getMessage() );
+      }
+    }
+
+  private static List<String> randomLines( int count )
+    {
+    Random random = new Random( 0 );
+    List<String> lines = new ArrayList<String>();
+
+    for( int i = 0; i < count; i++ )
+      {
+      StringBuilder line = new StringBuilder( "w" + random.nextInt( 100 ) );
+
+      for( int words = random.nextInt( 5 ); words > 0; words-- )
+        line.append( " w" ).append( random.nextInt( 100 ) );
+
+      lines.add( line.toString() );
+      }
+
+    return lines;
+    }
+
+  // the output, with the closed counts of all workers folded into one
+  private static List<String> run( List<String> lines, int threads, int batchSize ) throws IOException
+    {
+    JobConf conf = new JobConf();
+
+    conf.setMapperClass( WordMapper.class );
+    conf.setInt( ParallelMapRunner.THREADS, threads );
+    conf.setInt( ParallelMapRunner.BATCH_SIZE, batchSize );
+
+    final List<String> output = new ArrayList<String>();
+    ParallelMapRunner<LongWritable, Text, Text, LongWritable> runner = new ParallelMapRunner<LongWritable, Text, Text, LongWritable>();
+
+    runner.configure( conf );
+    runner.run( new ListReader( lines ), new OutputCollector<Text, LongWritable>()
+    {
+    public void collect( Text key, LongWritable value ) throws IOException
+      {
+      output.add( key + "=" + value );
+      }
+    }, Reporter.NULL );
+
+    return output;
+    }
+
+  // removes the closed counts from the output, and returns them
+  private static List<String> closed( List<String> output )
+    {
+    List<String> closed = new ArrayList<String>();
+
+    for( Iterator<String> iterator = output.iterator(); iterator.hasNext(); )
+      {
+      String record = iterator.next();
+
+      if( record.startsWith( CLOSED + "=" ) )
+        {
+        closed.add( record );
+        iterator.remove();
+        }
+      }
+
+    return closed;
+    }
+
+  private static long sum( List<String> closed )
+    {
+    long sum = 0;
+
+    for( String record : closed )
+      sum += Long.parseLong( record.substring( CLOSED.length() + 1 ) );
+
+    return sum;
+    }
+
+  private static class ListReader implements RecordReader<LongWritable, Text>
+    {
+    private final List<String> lines;
+    private int position;
+
+    ListReader( List<String> lines )
+      {
+      this.lines = lines;
+      }
+
+    public boolean next( LongWritable key, Text value )
+      {
+      if( position == lines.size() )
+        return false;
+
+      key.set( position );
+      value.set( lines.get( position++ ) );
+
+      return true;
+      }
+
+    public LongWritable createKey()
+      {
+      return new LongWritable();
+      }
+
+    public Text createValue()
+      {
+      return new Text();
+      }
+
+    public long getPos()
+      {
+      return position;
+      }
+
+    public void close()
+      {
+      }
+
+    public float getProgress()
+      {
+      return lines.isEmpty() ? 1 : position / (float) lines.size();
+      }
+    }
+  }
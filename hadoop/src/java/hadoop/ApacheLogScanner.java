@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package hadoop;
+
+/**
+ * Class ApacheLogScanner tokenizes an Apache common or combined log line directly from its UTF-8 bytes.
+ * <p/>
+ * It follows the same path the apache regex takes on the first, greedy, attempt, so any line it accepts yields
+ * the same six fields the regex would. Lines it rejects may still match the regex after backtracking (empty
+ * ident fields, stray line terminators), so callers should fall back to the regex for those.
+ * <p/>
+ * No objects are created per line, field positions are kept as offsets into the given buffer.
+ */
+public class ApacheLogScanner
+  {
+  public static final int NUM_FIELDS = 6;
+
+  private static final byte SPACE = ' ';
+  private static final byte QUOTE = '"';
+
+  private final int[] starts = new int[ NUM_FIELDS ];
+  private final int[] ends = new int[ NUM_FIELDS ];
+
+  private byte[] bytes;
+
+  /**
+   * Method scan parses the first length bytes of the given buffer, returns false if the line could not be parsed.
+   *
+   * @param bytes  of type byte[]
+   * @param length of type int
+   * @return boolean
+   */
+  public boolean scan( byte[] bytes, int length )
+    {
+    this.bytes = bytes;
+
+    // ip
+    int pos = token( 0, length );
+    field( 0, 0, pos );
+
+    // ident and user, the greedy path requires both to be non-empty
+    for( int i = 0; i < 2; i++ )
+      {
+      int next = spaces( pos, length );
+
+      if( next == pos || next == length || bytes[ next ] == '[' )
+        return false;
+
+      pos = token( next, length );
+      }
+
+    pos = spaces( pos, length );
+
+    // [time]
+    if( pos == length || bytes[ pos ] != '[' )
+      return false;
+
+    int timeStart = ++pos;
+
+    while( pos < length && bytes[ pos ] != ']' )
+      pos++;
+
+    if( pos == length )
+      return false;
+
+    field( 1, timeStart, pos++ );
+
+    int next = spaces( pos, length );
+
+    if( next == pos || next == length || bytes[ next ] != QUOTE )
+      return false;
+
+    // "method event protocol"
+    pos = next + 1;
+    next = token( pos, length );
+    field( 2, pos, next );
+
+    if( next == length )
+      return false;
+
+    pos = next + 1;
+    next = token( pos, length );
+    field( 3, pos, next );
+
+    if( next == length )
+      return false;
+
+    pos = next + 1;
+    int protocolEnd = token( pos, length );
+
+    // the regex backtracks from the last quote in the protocol token, try each in the same order
+    for( int quote = protocolEnd - 1; quote >= pos; quote-- )
+      {
+      if( bytes[ quote ] == QUOTE && scanTail( quote + 1, length ) )
+        return true;
+      }
+
+    return false;
+    }
+
+  // ' status size' followed by anything that is not a line terminator
+  private boolean scanTail( int pos, int length )
+    {
+    if( pos == length || bytes[ pos ] != SPACE )
+      return false;
+
+    int next = token( ++pos, length );
+
+    if( next == length )
+      return false;
+
+    field( 4, pos, next );
+
+    pos = next + 1;
+    next = token( pos, length );
+    field( 5, pos, next );
+
+    return !hasLineTerminator( next, length );
+    }
+
+  // the regex ends with '.*$', which will not cross a line terminator unless it is the very last character
+  private boolean hasLineTerminator( int pos, int length )
+    {
+    for( int i = pos; i < length; i++ )
+      {
+      byte current = bytes[ i ];
+
+      if( current == '\n' || current == '\r' )
+        return true;
+
+      // U+0085, U+2028 and U+2029 in UTF-8
+      if( current == (byte) 0xC2 && i + 1 < length && bytes[ i + 1 ] == (byte) 0x85 )
+        return true;
+
+      if( current == (byte) 0xE2 && i + 2 < length && bytes[ i + 1 ] == (byte) 0x80 && ( bytes[ i + 2 ] == (byte) 0xA8 || bytes[ i + 2 ] == (byte) 0xA9 ) )
+        return true;
+      }
+
+    return false;
+    }
+
+  private int token( int pos, int length )
+    {
+    while( pos < length && bytes[ pos ] != SPACE )
+      pos++;
+
+    return pos;
+    }
+
+  private int spaces( int pos, int length )
+    {
+    while( pos < length && bytes[ pos ] == SPACE )
+      pos++;
+
+    return pos;
+    }
+
+  private void field( int index, int start, int end )
+    {
+    starts[ index ] = start;
+    ends[ index ] = end;
+    }
+
+  public int getStart( int index )
+    {
+    return starts[ index ];
+    }
+
+  public int getLength( int index )
+    {
+    return ends[ index ] - starts[ index ];
+    }
+  }
@@ -25,6 +25,7 @@ import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.GenericOptionsParser;
 
 import java.io.IOException;
 
@@ -33,21 +34,26 @@ import java.io.IOException;
  */
 public class Main
   {
+  // the six fields of an apache common or combined log line, see ApacheLogScanner for the byte level equivalent
+  static final String APACHE_REGEX = "^([^ ]*) +[^ ]* +[^ ]* +\\[([^]]*)\\] +\\\"([^ ]*) ([^ ]*) [^ ]*\\\" ([^ ]*) ([^ ]*).*$";
+
   public static void main( String[] args ) throws IOException
     {
+    // initialize Hadoop job configuration, any -D options are applied to it, e.g. -D logparser.malformed=skip
+    JobConf jobConf = new JobConf();
+    args = new GenericOptionsParser( jobConf, args ).getRemainingArgs();
+
     // create Hadoop path instances
     Path inputPath = new Path( args[ 0 ] );
     Path outputPath = new Path( args[ 1 ] );
 
     // get the FileSystem instances for the input path
-    FileSystem outputFS = outputPath.getFileSystem( new JobConf() );
+    FileSystem outputFS = outputPath.getFileSystem( jobConf );
 
     // if output path exists, delete recursively
     if( outputFS.exists( outputPath ) )
       outputFS.delete( outputPath, true );
 
-    // initialize Hadoop job configuration
-    JobConf jobConf = new JobConf();
     jobConf.setJobName( "logparser" );
 
     // set the current job jar
@@ -68,8 +74,15 @@ public class Main
 
     // configure our parsing map classs
     jobConf.setMapperClass( RegexParserMap.class );
-    String apacheRegex = "^([^ ]*) +[^ ]* +[^ ]* +\\[([^]]*)\\] +\\\"([^ ]*) ([^ ]*) [^ ]*\\\" ([^ ]*) ([^ ]*).*$";
-    jobConf.set( "logparser.regex", apacheRegex );
+    jobConf.set( "logparser.regex", APACHE_REGEX );
+
+    // optionally use the byte level scanner, the regex is kept for any lines the scanner cannot parse
+    if( args.length > 2 )
+      jobConf.set( RegexParserMap.PARSER, args[ 2 ] );
+
+    // when skipping malformed lines, optionally keep them in the "rejects" files of the output directory
+    if( jobConf.getBoolean( RegexParserMap.MALFORMED_REJECTS, false ) )
+      RegexParserMap.addRejectsOutput( jobConf );
 
     // create Hadoop client, must pass in this JobConf for some reason
     JobClient jobClient = new JobClient( jobConf );
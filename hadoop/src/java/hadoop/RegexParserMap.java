@@ -22,35 +22,187 @@
 package hadoop;
 
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapred.lib.MultipleOutputs;
 
 import java.io.IOException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- *
+ * Parses each line with the regex in "logparser.regex", or with the {@link ApacheLogScanner} when
+ * "logparser.parser" is set to "scanner". Both modes report their throughput in the {@link Parse} counters.
+ * <p/>
+ * By default the task fails on the first line that cannot be parsed. Setting "logparser.malformed" to "skip" counts
+ * and drops such lines instead, optionally writing them to the "rejects" named output, and only fails the task once
+ * the fraction of malformed lines exceeds "logparser.malformed.threshold".
  */
 public class RegexParserMap extends MapReduceBase implements Mapper<LongWritable, Text, Text, Text>
   {
+  public static final String PARSER = "logparser.parser";
+  public static final String PARSER_REGEX = "regex";
+  public static final String PARSER_SCANNER = "scanner";
+
+  public static final String MALFORMED = "logparser.malformed";
+  public static final String MALFORMED_FAIL = "fail";
+  public static final String MALFORMED_SKIP = "skip";
+  public static final String MALFORMED_REJECTS = "logparser.malformed.rejects";
+  public static final String MALFORMED_THRESHOLD = "logparser.malformed.threshold";
+  public static final String MALFORMED_MIN_RECORDS = "logparser.malformed.minrecords";
+
+  public static final String REJECTS = "rejects";
+
+  public enum Parse
+    {
+      RECORDS, BYTES, NANOS, FALLBACKS
+    }
+
+  public enum Malformed
+    {
+      SKIPPED, REJECTED
+    }
+
+  private static final byte[] TAB = {'\t'};
+  private static final int REPORT_INTERVAL = 1000;
+
   private Pattern pattern;
   private Matcher matcher;
+  private ApacheLogScanner scanner;
+
+  // re-used for every line in scanner mode
+  private final Text result = new Text();
+
+  private Reporter lastReporter;
+  private long records;
+  private long bytes;
+  private long nanos;
+  private long fallbacks;
+
+  private boolean skipMalformed;
+  private float threshold;
+  private long minRecords;
+  private long totalRecords;
+  private long totalMalformed;
+  private MultipleOutputs multipleOutputs;
 
   @Override
   public void configure( JobConf job )
     {
-    pattern = Pattern.compile( job.get( "logparser.regex" ) );
-    matcher = pattern.matcher( "" ); // lets re-use the matcher
+    String regex = job.get( "logparser.regex" );
+
+    if( regex != null )
+      {
+      pattern = Pattern.compile( regex );
+      matcher = pattern.matcher( "" ); // lets re-use the matcher
+      }
+
+    String parser = job.get( PARSER, PARSER_REGEX );
+
+    if( PARSER_SCANNER.equals( parser ) )
+      scanner = new ApacheLogScanner();
+    else if( !PARSER_REGEX.equals( parser ) )
+      throw new IllegalArgumentException( "unknown parser: " + parser + ", must be '" + PARSER_REGEX + "' or '" + PARSER_SCANNER + "'" );
+
+    if( scanner == null && pattern == null )
+      throw new IllegalArgumentException( "logparser.regex must be set when using the regex parser" );
+
+    String malformed = job.get( MALFORMED, MALFORMED_FAIL );
+
+    if( MALFORMED_SKIP.equals( malformed ) )
+      skipMalformed = true;
+    else if( !MALFORMED_FAIL.equals( malformed ) )
+      throw new IllegalArgumentException( "unknown malformed policy: " + malformed + ", must be '" + MALFORMED_FAIL + "' or '" + MALFORMED_SKIP + "'" );
+
+    threshold = job.getFloat( MALFORMED_THRESHOLD, 0.01f );
+    minRecords = job.getLong( MALFORMED_MIN_RECORDS, 10000 );
+
+    if( skipMalformed && job.getBoolean( MALFORMED_REJECTS, false ) )
+      multipleOutputs = new MultipleOutputs( job );
+    }
+
+  /**
+   * Method addRejectsOutput registers the "rejects" named output malformed lines are written to.
+   *
+   * @param jobConf of type JobConf
+   */
+  public static void addRejectsOutput( JobConf jobConf )
+    {
+    jobConf.setBoolean( MALFORMED_REJECTS, true );
+    MultipleOutputs.addNamedOutput( jobConf, REJECTS, TextOutputFormat.class, NullWritable.class, Text.class );
     }
 
   @Override
   public void map( LongWritable key, Text value, OutputCollector<Text, Text> output, Reporter reporter ) throws IOException
     {
+    long startTime = System.nanoTime();
+
+    Text text = scanner != null ? scan( value ) : null;
+
+    if( text == null )
+      text = match( value );
+
+    nanos += System.nanoTime() - startTime;
+    bytes += value.getLength();
+    totalRecords++;
+    lastReporter = reporter;
+
+    // pass null so a TAB is not prepended, not all OutputFormats accept null
+    if( text != null )
+      output.collect( null, text );
+    else
+      malformed( value, reporter );
+
+    if( ++records % REPORT_INTERVAL == 0 )
+      report( reporter );
+    }
+
+  private Text scan( Text value )
+    {
+    if( !scanner.scan( value.getBytes(), value.getLength() ) )
+      {
+      // let the regex decide, it may still match after backtracking
+      if( pattern != null )
+        fallbacks++;
+
+      return null;
+      }
+
+    byte[] bytes = value.getBytes();
+
+    result.clear();
+
+    for( int i = 0; i < ApacheLogScanner.NUM_FIELDS; i++ )
+      {
+      if( i != 0 )
+        result.append( TAB, 0, 1 );
+
+      result.append( bytes, scanner.getStart( i ), scanner.getLength( i ) );
+      }
+
+    return result;
+    }
+
+  private Text match( Text value )
+    {
+    if( pattern == null )
+      {
+      if( !skipMalformed )
+        throw new RuntimeException( "could not scan value: [" + value + "]" );
+
+      return null;
+      }
+
     matcher.reset( value.toString() );
 
     if( !matcher.find() )
-      throw new RuntimeException( "could not match pattern: [" + pattern + "] with value: [" + value + "]" );
+      {
+      if( !skipMalformed )
+        throw new RuntimeException( "could not match pattern: [" + pattern + "] with value: [" + value + "]" );
+
+      return null;
+      }
 
     StringBuffer buffer = new StringBuffer();
 
@@ -62,7 +214,50 @@ public class RegexParserMap extends MapReduceBase implements Mapper<LongWritable
       buffer.append( matcher.group( i + 1 ) ); // skip group 0
       }
 
-    // pass null so a TAB is not prepended, not all OutputFormats accept null
-    output.collect( null, new Text( buffer.toString() ) );
+    return new Text( buffer.toString() );
+    }
+
+  @SuppressWarnings("unchecked")
+  private void malformed( Text value, Reporter reporter ) throws IOException
+    {
+    totalMalformed++;
+    reporter.incrCounter( Malformed.SKIPPED, 1 );
+
+    if( multipleOutputs != null )
+      {
+      multipleOutputs.getCollector( REJECTS, reporter ).collect( NullWritable.get(), value );
+      reporter.incrCounter( Malformed.REJECTED, 1 );
+      }
+
+    // only judge the error rate once enough lines were seen, a single bad line early on should not fail the task
+    if( totalRecords >= minRecords && totalMalformed > threshold * totalRecords )
+      throw new IOException( "malformed lines: " + totalMalformed + " of " + totalRecords + " exceeds threshold: " + threshold + ", last value: [" + value + "]" );
+    }
+
+  private void report( Reporter reporter )
+    {
+    reporter.incrCounter( Parse.RECORDS, records );
+    reporter.incrCounter( Parse.BYTES, bytes );
+    reporter.incrCounter( Parse.NANOS, nanos );
+    reporter.incrCounter( Parse.FALLBACKS, fallbacks );
+
+    records = 0;
+    bytes = 0;
+    nanos = 0;
+    fallbacks = 0;
+    }
+
+  @Override
+  public void close() throws IOException
+    {
+    if( lastReporter != null )
+      report( lastReporter );
+
+    if( multipleOutputs != null )
+      multipleOutputs.close();
+
+    // a small split, e.g. the short last split of a file, is not judged, a single bad line would fail it
+    if( totalRecords >= minRecords && totalMalformed > threshold * totalRecords )
+      throw new IOException( "malformed lines: " + totalMalformed + " of " + totalRecords + " exceeds threshold: " + threshold );
     }
   }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package hadoop;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that every line {@link ApacheLogScanner} accepts yields the same six fields as the regex RegexParserMap
+ * falls back to.
+ */
+public class ApacheLogScannerTest extends TestCase
+  {
+  static final String[] MALFORMED = {
+    "",
+    " ",
+    "127.0.0.1",
+    "127.0.0.1 - -",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000]",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\"",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000 \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - 01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET /\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET\" 200 10",
+    "127.0.0.1  [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 -  [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - []\"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET  / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\"200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\"  200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10\n",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10 \"-\"\r\"-\"",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10 \"\u2028\"",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10 \"\u0085\"",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\"\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1\"1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / \"HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10 \"ref\" \"agent\"",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" - -",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\"  ",
+    "   127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/[2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000]] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 [- -] [01/Sep/2007:00:01:03 +0000] \"GET / HTTP/1.1\" 200 10",
+    "127.0.0.1 - - [01/Sep/2007:00:01:03 +0000] \"GET /caf\u00e9 HTTP/1.1\" 200 10 \"\u65e5\u672c\""
+  };
+
+  // characters the regex treats specially, mixed into the sample lines
+  static final String[] PIECES = {" ", "  ", "\"", "[", "]", "-", "x", "\n", "\r", "\u2028", "\u00e9"};
+
+  private final Pattern pattern = Pattern.compile( Main.APACHE_REGEX );
+  private final ApacheLogScanner scanner = new ApacheLogScanner();
+
+  public ApacheLogScannerTest()
+    {
+    super( "apache log scanner" );
+    }
+
+  public void testSampleData() throws IOException
+    {
+    List<String> lines = readLines( "data/apache.200.txt" );
+
+    assertEquals( 200, lines.size() );
+
+    // every well formed line is accepted, none should need the regex
+    for( String line : lines )
+      assertEquals( "fields of: [" + line + "]", regexFields( line ), scannerFields( line ) );
+    }
+
+  public void testMalformed() throws IOException
+    {
+    for( String line : MALFORMED )
+      assertAgrees( line );
+    }
+
+  public void testMutatedSampleData() throws IOException
+    {
+    List<String> lines = readLines( "data/apache.200.txt" );
+    Random random = new Random( 0 );
+
+    for( int i = 0; i < 5000; i++ )
+      {
+      StringBuilder builder = new StringBuilder( lines.get( random.nextInt( lines.size() ) ) );
+      int mutations = 1 + random.nextInt( 3 );
+
+      for( int j = 0; j < mutations; j++ )
+        {
+        int position = random.nextInt( builder.length() + 1 );
+
+        if( random.nextBoolean() && position < builder.length() )
+          builder.deleteCharAt( position );
+        else
+          builder.insert( position, PIECES[ random.nextInt( PIECES.length ) ] );
+        }
+
+      assertAgrees( builder.toString() );
+      }
+    }
+
+  // a line the scanner rejects is handed to the regex, so only accepted lines must agree
+  private void assertAgrees( String line ) throws IOException
+    {
+    List<String> fields = scannerFields( line );
+
+    if( fields != null )
+      assertEquals( "fields of: [" + line + "]", regexFields( line ), fields );
+    }
+
+  private List<String> scannerFields( String line ) throws IOException
+    {
+    byte[] bytes = line.getBytes( "UTF-8" );
+
+    if( !scanner.scan( bytes, bytes.length ) )
+      return null;
+
+    List<String> fields = new ArrayList<String>();
+
+    for( int i = 0; i < ApacheLogScanner.NUM_FIELDS; i++ )
+      fields.add( new String( bytes, scanner.getStart( i ), scanner.getLength( i ), "UTF-8" ) );
+
+    return fields;
+    }
+
+  private List<String> regexFields( String line )
+    {
+    Matcher matcher = pattern.matcher( line );
+
+    if( !matcher.find() )
+      return null;
+
+    String[] fields = new String[ matcher.groupCount() ];
+
+    for( int i = 0; i < fields.length; i++ )
+      fields[ i ] = matcher.group( i + 1 );
+
+    return Arrays.asList( fields );
+    }
+
+  private static List<String> readLines( String path ) throws IOException
+    {
+    BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( path ), "UTF-8" ) );
+    List<String> lines = new ArrayList<String>();
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        lines.add( line );
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    return lines;
+    }
+  }
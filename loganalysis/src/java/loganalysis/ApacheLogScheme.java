@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import cascading.scheme.Scheme;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleException;
+import common.Codecs;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+import org.apache.hadoop.mapred.SequenceFileOutputFormat;
+
+/**
+ * Class ApacheLogScheme stores parsed Apache log records, "ip", "time", "method", "event", "status" and "size", as
+ * typed binary values in a block compressed sequence file, see {@link Codecs} for the codec.
+ * <p/>
+ * "time" is stored as milliseconds since the epoch and read back as a Long, "status" as a short read back as an
+ * Integer, and "size" as a variable length long read back as a Long. A "-" status or size is read back as null, and
+ * so is one that is not a number, or out of range, so a single odd line does not fail the import. The
+ * strings are length prefixed, so fields that are not in the source fields are skipped without being decoded, and
+ * decoding stops after the last field read.
+ */
+public class ApacheLogScheme extends Scheme
+  {
+  public static final Fields FIELDS = new Fields( "ip", "time", "method", "event", "status", "size" );
+
+  private static final int IP = 0;
+  private static final int TIME = 1;
+  private static final int METHOD = 2;
+  private static final int EVENT = 3;
+  private static final int STATUS = 4;
+  private static final int SIZE = 5;
+
+  private final String codec;
+
+  // the position of each stored field in the source tuple, -1 if not read
+  private final int[] positions = new int[ FIELDS.size() ];
+  private int lastField = -1;
+
+  private transient DataOutputBuffer outputBuffer;
+  private transient BytesWritable bytes;
+  private transient DataInputBuffer inputBuffer;
+  private transient Text text;
+  private transient ApacheTime apacheTime;
+
+  public ApacheLogScheme()
+    {
+    this( FIELDS );
+    }
+
+  public ApacheLogScheme( Fields sourceFields )
+    {
+    this( sourceFields, null );
+    }
+
+  /**
+   * Constructor ApacheLogScheme creates a new ApacheLogScheme instance.
+   *
+   * @param sourceFields of type Fields, the subset of the stored fields to read, in any order
+   * @param codec        of type String, the codec name, or null to use the "samples.sequencefile.codec" property
+   */
+  public ApacheLogScheme( Fields sourceFields, String codec )
+    {
+    super( sourceFields, FIELDS );
+    this.codec = codec;
+
+    for( int i = 0; i < positions.length; i++ )
+      positions[ i ] = -1;
+
+    for( int i = 0; i < sourceFields.size(); i++ )
+      {
+      int index = indexOf( sourceFields.get( i ) );
+
+      if( index == -1 )
+        throw new IllegalArgumentException( "unknown field: " + sourceFields.get( i ) + ", must be one of: " + FIELDS.print() );
+
+      positions[ index ] = i;
+      lastField = Math.max( lastField, index );
+      }
+    }
+
+  private static int indexOf( Comparable field )
+    {
+    for( int i = 0; i < FIELDS.size(); i++ )
+      {
+      if( FIELDS.get( i ).equals( field ) )
+        return i;
+      }
+
+    return -1;
+    }
+
+  @Override
+  public void sourceInit( Tap tap, JobConf conf ) throws IOException
+    {
+    conf.setInputFormat( SequenceFileInputFormat.class );
+    }
+
+  @Override
+  public void sinkInit( Tap tap, JobConf conf ) throws IOException
+    {
+    conf.setOutputKeyClass( NullWritable.class );
+    conf.setOutputValueClass( BytesWritable.class );
+    conf.setOutputFormat( SequenceFileOutputFormat.class );
+
+    Codecs.setOutputCompression( conf, codec );
+    }
+
+  @Override
+  public Tuple source( Object key, Object value )
+    {
+    if( inputBuffer == null )
+      {
+      inputBuffer = new DataInputBuffer();
+      text = new Text();
+      }
+
+    BytesWritable record = (BytesWritable) value;
+    Tuple tuple = Tuple.size( getSourceFields().size() );
+
+    inputBuffer.reset( record.getBytes(), record.getLength() );
+
+    try
+      {
+      for( int i = 0; i <= lastField; i++ )
+        {
+        int position = positions[ i ];
+
+        switch( i )
+          {
+          case TIME:
+            long time = inputBuffer.readLong();
+
+            if( position != -1 )
+              tuple.set( position, time );
+
+            break;
+
+          case STATUS:
+            short status = inputBuffer.readShort();
+
+            if( position != -1 )
+              tuple.set( position, status == -1 ? null : (int) status );
+
+            break;
+
+          case SIZE:
+            long size = WritableUtils.readVLong( inputBuffer );
+
+            if( position != -1 )
+              tuple.set( position, size == 0 ? null : size - 1 );
+
+            break;
+
+          default:
+            readString( position, tuple );
+          }
+        }
+      }
+    catch( IOException exception )
+      {
+      throw new TupleException( "unable to read apache log record", exception );
+      }
+
+    return tuple;
+    }
+
+  private void readString( int position, Tuple tuple ) throws IOException
+    {
+    int length = WritableUtils.readVInt( inputBuffer );
+
+    if( length == -1 )
+      return;
+
+    if( position != -1 )
+      tuple.set( position, Text.decode( inputBuffer.getData(), inputBuffer.getPosition(), length ) );
+
+    inputBuffer.skip( length );
+    }
+
+  @Override
+  public void sink( TupleEntry tupleEntry, OutputCollector outputCollector ) throws IOException
+    {
+    if( outputBuffer == null )
+      {
+      outputBuffer = new DataOutputBuffer();
+      bytes = new BytesWritable();
+      text = new Text();
+      apacheTime = new ApacheTime();
+      }
+
+    Tuple tuple = tupleEntry.selectTuple( getSinkFields() );
+
+    outputBuffer.reset();
+
+    writeString( tuple.getString( IP ) );
+    outputBuffer.writeLong( toTime( tuple.get( TIME ) ) );
+    writeString( tuple.getString( METHOD ) );
+    writeString( tuple.getString( EVENT ) );
+    outputBuffer.writeShort( (int) toNumber( tuple.get( STATUS ), Short.MAX_VALUE ) );
+    WritableUtils.writeVLong( outputBuffer, toNumber( tuple.get( SIZE ), Long.MAX_VALUE - 1 ) + 1 );
+
+    bytes.set( outputBuffer.getData(), 0, outputBuffer.getLength() );
+    outputCollector.collect( NullWritable.get(), bytes );
+    }
+
+  private void writeString( String value ) throws IOException
+    {
+    if( value == null )
+      {
+      WritableUtils.writeVInt( outputBuffer, -1 );
+      return;
+      }
+
+    text.set( value );
+    WritableUtils.writeVInt( outputBuffer, text.getLength() );
+    outputBuffer.write( text.getBytes(), 0, text.getLength() );
+    }
+
+  private long toTime( Comparable value )
+    {
+    if( value instanceof Number )
+      return ( (Number) value ).longValue();
+
+    try
+      {
+      return apacheTime.parse( value.toString() );
+      }
+    catch( ParseException exception )
+      {
+      throw new TupleException( "unable to parse time: " + value, exception );
+      }
+    }
+
+  // the number, or -1, stored as null, if absent, not a number, or out of range
+  private static long toNumber( Comparable value, long max )
+    {
+    if( value == null || "-".equals( value ) )
+      return -1;
+
+    long number;
+
+    try
+      {
+      number = value instanceof Number ? ( (Number) value ).longValue() : Long.parseLong( value.toString() );
+      }
+    catch( NumberFormatException exception )
+      {
+      return -1;
+      }
+
+    if( number < 0 || number > max )
+      return -1;
+
+    return number;
+    }
+  }
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Class ApacheTime parses Apache log timestamps, "dd/MMM/yyyy:HH:mm:ss Z", into milliseconds since the epoch.
+ * <p/>
+ * Log lines arrive in time order, so the epoch of the last parsed minute is cached and a timestamp in the same minute
+ * and zone only costs reading its two second digits. Digits are read in place, no intermediate Strings are created.
+ * Anything that is not in the canonical layout is handed to {@link SimpleDateFormat}, so results never differ from it.
+ * Apache writes English month names, so both parse them in the US locale, whatever the default locale.
+ * <p/>
+ * Instances are not thread safe.
+ */
+public class ApacheTime
+  {
+  public static final String FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
+
+  private static final String MONTHS = "janfebmaraprmayjunjulaugsepoctnovdec";
+  private static final int LENGTH = FORMAT.length() + 4; // the zone is five characters, not one
+
+  private SimpleDateFormat dateFormat;
+
+  private String lastTime;
+  private long lastMinute = -1;
+
+  /**
+   * Method parse returns the given timestamp in milliseconds since the epoch.
+   *
+   * @param time of type String
+   * @return long
+   * @throws ParseException when time is not a valid timestamp
+   */
+  public long parse( String time ) throws ParseException
+    {
+    if( time.length() == LENGTH )
+      {
+      // same minute and zone as the last timestamp, only the seconds can differ
+      if( lastTime != null && time.regionMatches( 0, lastTime, 0, 17 ) && time.regionMatches( 20, lastTime, 20, 6 ) )
+        {
+        int seconds = digits( time, 18 );
+
+        if( seconds >= 0 && seconds < 60 && time.charAt( 17 ) == ':' )
+          return lastMinute + seconds * 1000L;
+        }
+
+      long minute = parseMinute( time );
+
+      if( minute != -1 )
+        {
+        int seconds = digits( time, 18 );
+
+        if( seconds >= 0 && seconds < 60 && time.charAt( 17 ) == ':' )
+          {
+          lastTime = time;
+          lastMinute = minute;
+
+          return minute + seconds * 1000L;
+          }
+        }
+      }
+
+    return parseFormat( time );
+    }
+
+  // returns the epoch of the minute, or -1 if the layout is not canonical
+  private long parseMinute( String time )
+    {
+    if( time.charAt( 2 ) != '/' || time.charAt( 6 ) != '/' || time.charAt( 11 ) != ':' || time.charAt( 14 ) != ':' || time.charAt( 20 ) != ' ' )
+      return -1;
+
+    int day = digits( time, 0 );
+    int month = month( time );
+    int century = digits( time, 7 );
+    int year = digits( time, 9 );
+    int hour = digits( time, 12 );
+    int minute = digits( time, 15 );
+
+    char sign = time.charAt( 21 );
+    int zoneHours = digits( time, 22 );
+    int zoneMinutes = digits( time, 24 );
+
+    if( century < 0 || year < 0 )
+      return -1;
+
+    year += century * 100;
+
+    if( month < 1 || year < 1970 || hour < 0 || hour > 23 || minute < 0 || minute > 59 )
+      return -1;
+
+    if( day < 1 || day > daysInMonth( year, month ) )
+      return -1;
+
+    if( ( sign != '+' && sign != '-' ) || zoneHours < 0 || zoneHours > 23 || zoneMinutes < 0 || zoneMinutes > 59 )
+      return -1;
+
+    long offset = ( zoneHours * 60L + zoneMinutes ) * 60 * 1000;
+
+    if( sign == '-' )
+      offset = -offset;
+
+    return ( ( epochDay( year, month, day ) * 24 + hour ) * 60 + minute ) * 60 * 1000 - offset;
+    }
+
+  private int month( String time )
+    {
+    for( int i = 0; i < MONTHS.length(); i += 3 )
+      {
+      if( time.regionMatches( true, 3, MONTHS, i, 3 ) )
+        return i / 3 + 1;
+      }
+
+    return -1;
+    }
+
+  // two ascii digits at the given position, or -1
+  private static int digits( String time, int pos )
+    {
+    int tens = time.charAt( pos ) - '0';
+    int ones = time.charAt( pos + 1 ) - '0';
+
+    if( tens < 0 || tens > 9 || ones < 0 || ones > 9 )
+      return -1;
+
+    return tens * 10 + ones;
+    }
+
+  private static int daysInMonth( int year, int month )
+    {
+    if( month == 2 )
+      return ( year % 4 == 0 && ( year % 100 != 0 || year % 400 == 0 ) ) ? 29 : 28;
+
+    return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+  // days since 1970-01-01 in the proleptic gregorian calendar
+  private static long epochDay( int year, int month, int day )
+    {
+    if( month <= 2 )
+      year--;
+
+    long era = year / 400;
+    long yearOfEra = year - era * 400;
+    long dayOfYear = ( 153 * ( month + ( month > 2 ? -3 : 9 ) ) + 2 ) / 5 + day - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+
+    return era * 146097 + dayOfEra - 719468;
+    }
+
+  private long parseFormat( String time ) throws ParseException
+    {
+    if( dateFormat == null )
+      dateFormat = new SimpleDateFormat( FORMAT, Locale.US );
+
+    return dateFormat.parse( time ).getTime();
+    }
+  }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.text.ParseException;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.operation.OperationException;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import loganalysis.ArrivalRateRollup.Granularity;
+
+/**
+ * Class ApacheTimeParser parses an Apache log timestamp with {@link ApacheTime}, replacing a
+ * {@link cascading.operation.text.DateParser} with the "dd/MMM/yyyy:HH:mm:ss Z" format. A timestamp that is already a
+ * number of milliseconds is taken as is.
+ * <p/>
+ * The first declared field receives the timestamp in milliseconds, every further field must be named after a
+ * {@link Granularity} field, e.g. "tm", and receives the start of the period the timestamp falls in.
+ */
+public class ApacheTimeParser extends BaseOperation<ApacheTime> implements Function<ApacheTime>
+  {
+  private final long[] periods;
+
+  public ApacheTimeParser( Fields fieldDeclaration )
+    {
+    super( 1, fieldDeclaration );
+
+    periods = new long[ fieldDeclaration.size() - 1 ];
+
+    for( int i = 0; i < periods.length; i++ )
+      periods[ i ] = periodFor( fieldDeclaration.get( i + 1 ) );
+    }
+
+  private static long periodFor( Comparable field )
+    {
+    for( Granularity granularity : Granularity.values() )
+      {
+      if( granularity.getField().get( 0 ).equals( field ) )
+        return granularity.getPeriod();
+      }
+
+    throw new IllegalArgumentException( "unknown period field: " + field );
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<ApacheTime> operationCall )
+    {
+    operationCall.setContext( new ApacheTime() );
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<ApacheTime> functionCall )
+    {
+    Comparable value = functionCall.getArguments().get( 0 );
+    long time;
+
+    // already parsed, e.g. read back with an ApacheLogScheme
+    if( value instanceof Number )
+      time = ( (Number) value ).longValue();
+    else
+      time = parse( functionCall.getContext(), (String) value );
+
+    Tuple result = new Tuple();
+    result.add( time );
+
+    for( long period : periods )
+      result.add( time - ( time % period ) );
+
+    functionCall.getOutputCollector().add( result );
+    }
+
+  private static long parse( ApacheTime apacheTime, String value )
+    {
+    try
+      {
+      return apacheTime.parse( value );
+      }
+    catch( ParseException exception )
+      {
+      throw new OperationException( "unable to parse input value: " + value, exception );
+      }
+    }
+  }
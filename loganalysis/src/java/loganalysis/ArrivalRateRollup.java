@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import cascading.operation.Identity;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
+import cascading.tuple.Fields;
+
+/**
+ * Class ArrivalRateRollup counts the requests per second, minute, hour and day, or any subset of them, with a
+ * single shuffle.
+ * <p/>
+ * The incoming "ts" timestamps are counted per second map side, grouped by their "td" day and sorted by second, and the
+ * {@link Rollup} buffer derives every coarser count from the sorted per second stream. Each granularity ends in its
+ * own tail, named by {@link Granularity#getName()}, declaring the period field and "count".
+ * <p/>
+ * The incoming stream must declare both "ts" and "td", as created by {@link ApacheTimeParser}.
+ */
+public class ArrivalRateRollup extends SubAssembly
+  {
+  public enum Granularity
+    {
+      SECOND( "ts", 1000L ),
+      MINUTE( "tm", 60 * 1000L ),
+      HOUR( "th", 60 * 60 * 1000L ),
+      DAY( "td", 24 * 60 * 60 * 1000L );
+
+    private final String field;
+    private final long period;
+
+    Granularity( String field, long period )
+      {
+      this.field = field;
+      this.period = period;
+      }
+
+    public Fields getField()
+      {
+      return new Fields( field );
+      }
+
+    public long getPeriod()
+      {
+      return period;
+      }
+
+    /** the tail pipe name, e.g. "tsCount" */
+    public String getName()
+      {
+      return field + "Count";
+      }
+    }
+
+  public ArrivalRateRollup( Pipe pipe, Granularity... granularities )
+    {
+    this( Pipe.pipes( pipe ), granularities );
+    }
+
+  /**
+   * Constructor ArrivalRateRollup counts the requests of all the given pipes together, they are merged by the
+   * grouping.
+   *
+   * @param pipes         of type Pipe[]
+   * @param granularities of type Granularity...
+   */
+  public ArrivalRateRollup( Pipe[] pipes, Granularity... granularities )
+    {
+    if( granularities.length == 0 )
+      throw new IllegalArgumentException( "at least one granularity is required" );
+
+    long[] periods = new long[ granularities.length ];
+
+    for( int i = 0; i < granularities.length; i++ )
+      periods[ i ] = granularities[ i ].getPeriod();
+
+    // every granularity nests in a day, so grouping by day lets a single reducer see every period it emits
+    Fields ts = Granularity.SECOND.getField();
+    Fields td = Granularity.DAY.getField();
+    Fields count = new Fields( "count" );
+
+    // shuffle one partial count per second and mapper, sorted by second within each day
+    Pipe[] counts = new Pipe[ pipes.length ];
+
+    for( int i = 0; i < pipes.length; i++ )
+      counts[ i ] = new Each( pipes[ i ], td.append( ts ), new PartialCount( td.append( ts ), count, PartialCount.DEFAULT_CAPACITY ), Fields.RESULTS );
+
+    Pipe pipe = new GroupBy( counts, td, ts );
+
+    Fields rollupFields = new Fields( "granularity", "time", "count" );
+    pipe = new Every( pipe, ts.append( count ), new Rollup( rollupFields, periods ), Fields.RESULTS );
+
+    Pipe[] tails = new Pipe[ granularities.length ];
+
+    for( int i = 0; i < granularities.length; i++ )
+      {
+      // split out each granularity, renaming "time" to the granularity field
+      Pipe tail = new Pipe( granularities[ i ].getName(), pipe );
+      tail = new Each( tail, new Fields( "granularity" ), new GranularityFilter( i ) );
+      tail = new Each( tail, new Fields( "time", "count" ), new Identity( granularities[ i ].getField().append( count ) ) );
+
+      tails[ i ] = tail;
+      }
+
+    setTails( tails );
+    }
+  }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Class DistinctCount merges the encoded {@link HyperLogLog} sketches of a group and emits the estimated number of
+ * distinct values.
+ */
+public class DistinctCount extends BaseOperation<HyperLogLog> implements Aggregator<HyperLogLog>
+  {
+  private final int precision;
+
+  public DistinctCount( Fields fieldDeclaration )
+    {
+    this( fieldDeclaration, HyperLogLog.DEFAULT_PRECISION );
+    }
+
+  public DistinctCount( Fields fieldDeclaration, int precision )
+    {
+    super( 1, fieldDeclaration );
+    this.precision = precision;
+    }
+
+  public void start( FlowProcess flowProcess, AggregatorCall<HyperLogLog> aggregatorCall )
+    {
+    if( aggregatorCall.getContext() == null )
+      aggregatorCall.setContext( new HyperLogLog( precision ) );
+    else
+      aggregatorCall.getContext().clear();
+    }
+
+  public void aggregate( FlowProcess flowProcess, AggregatorCall<HyperLogLog> aggregatorCall )
+    {
+    aggregatorCall.getContext().merge( aggregatorCall.getArguments().getString( 0 ) );
+    }
+
+  public void complete( FlowProcess flowProcess, AggregatorCall<HyperLogLog> aggregatorCall )
+    {
+    aggregatorCall.getOutputCollector().add( new Tuple( aggregatorCall.getContext().estimate() ) );
+    }
+  }
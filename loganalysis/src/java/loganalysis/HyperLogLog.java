@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.util.Arrays;
+
+/**
+ * Class HyperLogLog estimates the number of distinct values offered to it in a fixed 2^precision bytes. Two instances
+ * of the same precision merge losslessly, so partial sketches can be built map side and merged after grouping.
+ * <p/>
+ * The relative error is about 1.04 / sqrt(2^precision), 1.6% for the default precision of 12.
+ */
+public class HyperLogLog
+  {
+  public static final int DEFAULT_PRECISION = 12;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog( int precision )
+    {
+    if( precision < 4 || precision > 16 )
+      throw new IllegalArgumentException( "precision must be between 4 and 16, was: " + precision );
+
+    this.precision = precision;
+    this.registers = new byte[ 1 << precision ];
+    }
+
+  public void offer( String value )
+    {
+    long hash = hash( value );
+    int index = (int) ( hash >>> ( 64 - precision ) );
+    int rank = Long.numberOfLeadingZeros( ( hash << precision ) | ( 1L << ( precision - 1 ) ) ) + 1;
+
+    if( rank > registers[ index ] )
+      registers[ index ] = (byte) rank;
+    }
+
+  public void merge( HyperLogLog other )
+    {
+    if( other.precision != precision )
+      throw new IllegalArgumentException( "cannot merge precision: " + other.precision + " into: " + precision );
+
+    for( int i = 0; i < registers.length; i++ )
+      {
+      if( other.registers[ i ] > registers[ i ] )
+        registers[ i ] = other.registers[ i ];
+      }
+    }
+
+  public long estimate()
+    {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+
+    for( byte register : registers )
+      {
+      sum += 1.0 / ( 1L << register );
+
+      if( register == 0 )
+        zeros++;
+      }
+
+    double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / ( 1 + 1.079 / m );
+    double estimate = alpha * m * m / sum;
+
+    // linear counting is more accurate while many registers are still empty
+    if( estimate <= 2.5 * m && zeros != 0 )
+      estimate = m * Math.log( (double) m / zeros );
+
+    return Math.round( estimate );
+    }
+
+  public void clear()
+    {
+    Arrays.fill( registers, (byte) 0 );
+    }
+
+  /** encodes the registers as one character each, so the sketch can be stored in a tuple */
+  public String encode()
+    {
+    char[] chars = new char[ registers.length ];
+
+    for( int i = 0; i < registers.length; i++ )
+      chars[ i ] = (char) ( '0' + registers[ i ] );
+
+    return new String( chars );
+    }
+
+  public void merge( String encoded )
+    {
+    if( encoded.length() != registers.length )
+      throw new IllegalArgumentException( "encoded sketch has: " + encoded.length() + " registers, expected: " + registers.length );
+
+    for( int i = 0; i < registers.length; i++ )
+      {
+      byte register = (byte) ( encoded.charAt( i ) - '0' );
+
+      if( register > registers[ i ] )
+        registers[ i ] = register;
+      }
+    }
+
+  // 64 bit FNV-1a, finished with the murmur3 mixer so every bit depends on every char
+  private static long hash( String value )
+    {
+    long hash = 0xcbf29ce484222325L;
+
+    for( int i = 0; i < value.length(); i++ )
+      {
+      hash ^= value.charAt( i );
+      hash *= 0x100000001b3L;
+      }
+
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+
+    return hash;
+    }
+  }
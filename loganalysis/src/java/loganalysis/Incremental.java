@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.flow.Flow;
+import cascading.flow.FlowConnector;
+import cascading.operation.Identity;
+import cascading.operation.aggregator.Sum;
+import cascading.operation.regex.RegexSplitter;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
+import cascading.scheme.TextLine;
+import cascading.tap.Hfs;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import common.MappedTextLine;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapred.JobConf;
+
+/**
+ * Class Incremental counts the arrival rates of only the lines appended to the input files since its last run, and
+ * merges them into the previous counts.
+ * <p/>
+ * The byte offset consumed in every input file is kept in "arrivalrate/_offsets", and each run only reads the bytes
+ * past it, see {@link MappedTextLine}. Only complete lines are consumed, a trailing line without a newline is left for
+ * the next run, and a file that shrank is read again from the start.
+ * <p/>
+ * The offsets are keyed on a fingerprint of the first line of each file, not its path, so a rotated log that was
+ * renamed, e.g. "access.log" to "access.log.1", is resumed where it was left, and the new log at the old path is read
+ * from the start. Compressed files are skipped, their offsets are not those of the lines, so a log compressed on
+ * rotation must be compressed after its last lines were consumed. Two files starting with the same line cannot be
+ * told apart and fail the run.
+ * <p/>
+ * The merged counts are written next to the previous ones and swapped in, with the offsets, once the flow completed.
+ * Counts written by a non incremental run have no offsets and are recomputed from scratch.
+ */
+public class Incremental
+  {
+  static final String OFFSETS = "_offsets";
+
+  // a longer first line is fingerprinted on its first bytes only
+  static final int FINGERPRINT_SIZE = 1024;
+
+  private final FlowConnector flowConnector;
+  private final String inputPath;
+  private final String outputPath;
+  private final JobConf jobConf = new JobConf();
+
+  public Incremental( FlowConnector flowConnector, String inputPath, String outputPath )
+    {
+    this.flowConnector = flowConnector;
+    this.inputPath = inputPath;
+    this.outputPath = outputPath;
+    }
+
+  public void run() throws IOException
+    {
+    Path resultsPath = new Path( outputPath, "arrivalrate" );
+    Path nextPath = new Path( outputPath, "arrivalrate.next" );
+    Path oldPath = new Path( outputPath, "arrivalrate.old" );
+    FileSystem outputFS = resultsPath.getFileSystem( jobConf );
+
+    // finish or roll back a swap that was interrupted
+    if( !outputFS.exists( resultsPath ) && outputFS.exists( oldPath ) )
+      outputFS.rename( oldPath, resultsPath );
+
+    outputFS.delete( oldPath, true );
+    outputFS.delete( nextPath, true );
+
+    Path offsetsPath = new Path( resultsPath, OFFSETS );
+    boolean hasResults = outputFS.exists( offsetsPath );
+    Map<String, Long> offsets = hasResults ? readOffsets( outputFS, offsetsPath ) : new HashMap<String, Long>();
+
+    Map<String, Long> nextOffsets = new LinkedHashMap<String, Long>();
+    Map<String, String> nextPaths = new HashMap<String, String>();
+
+    Map<String, Tap> sources = new HashMap<String, Tap>();
+    List<Pipe> pipes = new ArrayList<Pipe>();
+
+    FileSystem inputFS = getInputFileSystem();
+    CompressionCodecFactory codecs = new CompressionCodecFactory( jobConf );
+
+    for( FileStatus status : listInputs( inputFS ) )
+      {
+      String path = status.getPath().toString();
+
+      if( codecs.getCodec( status.getPath() ) != null )
+        {
+        System.out.println( "skipping compressed input: " + path );
+        continue;
+        }
+
+      String fingerprint = fingerprint( inputFS, status.getPath(), status.getLen() );
+
+      // not even one complete line yet
+      if( fingerprint == null )
+        continue;
+
+      if( nextPaths.containsKey( fingerprint ) )
+        throw new IOException( "inputs start with the same line, their offsets cannot be told apart: " + nextPaths.get( fingerprint ) + " and " + path );
+
+      Long consumed = offsets.get( fingerprint );
+      long start = consumed == null || consumed > status.getLen() ? 0 : consumed;
+      long end = lineEnd( inputFS, status.getPath(), start, status.getLen() );
+
+      nextOffsets.put( fingerprint, end );
+      nextPaths.put( fingerprint, path );
+
+      if( end <= start )
+        continue;
+
+      // only read the lines in [start, end) of this file
+      String name = "log " + pipes.size();
+      sources.put( name, new Hfs( new MappedTextLine( new Fields( "offset", "line" ), start, end ), path ) );
+
+      pipes.add( Main.createImportPipe( new Pipe( name ) ) );
+      }
+
+    if( pipes.isEmpty() )
+      {
+      System.out.println( "no new input in: " + inputPath );
+      return;
+      }
+
+    SubAssembly rollupPipe = Main.createArrivalRatePipe( pipes.toArray( new Pipe[ pipes.size() ] ) );
+    Pipe[] tails = rollupPipe.getTails();
+
+    if( hasResults )
+      tails = mergePrevious( tails, sources, resultsPath );
+
+    Map<String, Tap> sinks = Main.createArrivalRateSinks( nextPath.toString() + "/" );
+
+    Flow flow = flowConnector.connect( "incremental arrival rate", sources, sinks, tails );
+
+    flow.complete();
+
+    writeOffsets( outputFS, new Path( nextPath, OFFSETS ), nextOffsets, nextPaths );
+
+    // swap the merged counts and their offsets in
+    if( outputFS.exists( resultsPath ) )
+      outputFS.rename( resultsPath, oldPath );
+
+    outputFS.rename( nextPath, resultsPath );
+    outputFS.delete( oldPath, true );
+    }
+
+  // sum every new count with the previous count of the same period
+  private Pipe[] mergePrevious( Pipe[] tails, Map<String, Tap> sources, Path resultsPath )
+    {
+    Fields count = new Fields( "count" );
+    Pipe[] merged = new Pipe[ tails.length ];
+
+    for( int i = 0; i < tails.length; i++ )
+      {
+      String name = Main.granularities[ i ].getName();
+      Fields field = Main.granularities[ i ].getField();
+
+      String previousName = "previous " + name;
+      sources.put( previousName, new Hfs( new TextLine(), new Path( resultsPath, Main.granularityPaths[ i ] ).toString() ) );
+
+      // the previous counts are read back as text, coerce them to match the new counts
+      Pipe previous = new Each( new Pipe( previousName ), new Fields( "line" ), new RegexSplitter( field.append( count ) ) );
+      previous = new Each( previous, new Identity( Long.TYPE, Long.TYPE ) );
+
+      merged[ i ] = new GroupBy( name, Pipe.pipes( tails[ i ], previous ), field );
+      merged[ i ] = new Every( merged[ i ], count, new Sum( count, long.class ) );
+      }
+
+    return merged;
+    }
+
+  private FileSystem getInputFileSystem() throws IOException
+    {
+    if( inputPath.matches( "^[^:]+://.*" ) )
+      return new Path( inputPath ).getFileSystem( jobConf );
+
+    return FileSystem.getLocal( jobConf );
+    }
+
+  private List<FileStatus> listInputs( FileSystem inputFS ) throws IOException
+    {
+    Path path = inputFS.makeQualified( new Path( inputPath ) );
+    List<FileStatus> inputs = new ArrayList<FileStatus>();
+
+    if( !inputFS.getFileStatus( path ).isDir() )
+      {
+      inputs.add( inputFS.getFileStatus( path ) );
+      return inputs;
+      }
+
+    for( FileStatus status : inputFS.listStatus( path ) )
+      {
+      String name = status.getPath().getName();
+
+      if( !status.isDir() && !name.startsWith( "_" ) && !name.startsWith( "." ) )
+        inputs.add( status );
+      }
+
+    return inputs;
+    }
+
+  // a digest of the first line, up to its newline, or of its first bytes if longer, null if not complete yet
+  static String fingerprint( FileSystem fileSystem, Path path, long length ) throws IOException
+    {
+    byte[] buffer = new byte[ (int) Math.min( length, FINGERPRINT_SIZE ) ];
+    FSDataInputStream inputStream = fileSystem.open( path );
+
+    try
+      {
+      inputStream.readFully( 0, buffer );
+      }
+    finally
+      {
+      inputStream.close();
+      }
+
+    int size = 0;
+
+    while( size < buffer.length && buffer[ size ] != '\n' )
+      size++;
+
+    if( size < buffer.length )
+      size++;
+    else if( buffer.length < FINGERPRINT_SIZE )
+      return null;
+
+    try
+      {
+      MessageDigest digest = MessageDigest.getInstance( "MD5" );
+      digest.update( buffer, 0, size );
+
+      StringBuilder builder = new StringBuilder();
+
+      for( byte value : digest.digest() )
+        builder.append( String.format( "%02x", value ) );
+
+      return builder.toString();
+      }
+    catch( NoSuchAlgorithmException exception )
+      {
+      throw new IllegalStateException( exception );
+      }
+    }
+
+  // the position just after the last newline in [start, length), or start if there is none
+  static long lineEnd( FileSystem fileSystem, Path path, long start, long length ) throws IOException
+    {
+    FSDataInputStream inputStream = fileSystem.open( path );
+    byte[] buffer = new byte[ 64 * 1024 ];
+
+    try
+      {
+      long position = length;
+
+      while( position > start )
+        {
+        int size = (int) Math.min( buffer.length, position - start );
+        position -= size;
+
+        inputStream.readFully( position, buffer, 0, size );
+
+        for( int i = size - 1; i >= 0; i-- )
+          {
+          if( buffer[ i ] == '\n' )
+            return position + i + 1;
+          }
+        }
+
+      return start;
+      }
+    finally
+      {
+      inputStream.close();
+      }
+    }
+
+  // the offsets by fingerprint
+  static Map<String, Long> readOffsets( FileSystem fileSystem, Path path ) throws IOException
+    {
+    Map<String, Long> offsets = new HashMap<String, Long>();
+    BufferedReader reader = new BufferedReader( new InputStreamReader( fileSystem.open( path ), "UTF-8" ) );
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        {
+        // fingerprint, offset and the path it was last seen at, for reference only
+        String[] values = line.split( "\t", 3 );
+
+        offsets.put( values[ 0 ], Long.parseLong( values[ 1 ] ) );
+        }
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    return offsets;
+    }
+
+  static void writeOffsets( FileSystem fileSystem, Path path, Map<String, Long> offsets, Map<String, String> paths ) throws IOException
+    {
+    Writer writer = new OutputStreamWriter( fileSystem.create( path, true ), "UTF-8" );
+
+    try
+      {
+      for( Map.Entry<String, Long> entry : offsets.entrySet() )
+        writer.write( entry.getKey() + "\t" + entry.getValue() + "\t" + paths.get( entry.getKey() ) + "\n" );
+      }
+    finally
+      {
+      writer.close();
+      }
+    }
+  }
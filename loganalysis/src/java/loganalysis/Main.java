@@ -21,6 +21,13 @@
 
 package loganalysis;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -29,97 +36,429 @@ import cascading.cascade.CascadeConnector;
 import cascading.cascade.Cascades;
 import cascading.flow.Flow;
 import cascading.flow.FlowConnector;
-import cascading.operation.aggregator.Count;
-import cascading.operation.expression.ExpressionFunction;
 import cascading.operation.regex.RegexParser;
-import cascading.operation.text.DateParser;
 import cascading.pipe.Each;
-import cascading.pipe.Every;
-import cascading.pipe.GroupBy;
 import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
 import cascading.scheme.TextLine;
 import cascading.tap.Hfs;
 import cascading.tap.Lfs;
 import cascading.tap.Tap;
 import cascading.tuple.Fields;
+import common.Codecs;
+import common.MappedTextLine;
+import common.Meter;
+import common.MeteredFunction;
+import common.ParallelMapRunner;
+import loganalysis.ArrivalRateRollup.Granularity;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
 
 /**
  *
  */
 public class Main
   {
-  public static void main( String[] args )
+  // declares: "ip", "time", "method", "event", "status", "size"
+  static final Fields apacheFields = new Fields( "ip", "time", "method", "event", "status", "size" );
+
+  static final Granularity[] granularities = {Granularity.SECOND, Granularity.MINUTE, Granularity.HOUR, Granularity.DAY};
+  static final String[] granularityPaths = {"sec", "min", "hour", "day"};
+
+  // the space saving counters kept per minute, any event above 1 / 100 of the requests in a minute is always tracked
+  static final int topCapacity = 100;
+
+  // the heap the sketches of a mapper may use, the minutes held scale down as the sketches grow
+  static final long sketchMemory = 8 * 1024 * 1024;
+
+  public static void main( String[] args ) throws IOException
     {
+    String inputPath = args[ 0 ];
+    String outputPath = args[ 1 ];
+
+    List<String> options = Arrays.asList( args ).subList( 2, args.length );
+
+    // --fused parses and counts in a single flow, --no-logs skips the parsed log copy the fused flow tees off
+    // --benchmark runs both ways, under output/cascade and output/fused, and compares them
+    // --incremental only counts what was appended to the input since the last --incremental run, see Incremental
+    boolean fused = options.contains( "--fused" );
+    boolean writeLogs = !options.contains( "--no-logs" );
+
     // set the current job jar
     Properties properties = new Properties();
     FlowConnector.setApplicationJarClass( properties, Main.class );
 
+    // --codec compresses the parsed log, "default" unless given, --map-codec compresses the map output
+    // --benchmark-codecs runs the cascade once per codec, under output/<codec>, see Codecs
+    Codecs.setCodec( properties, option( options, "--codec", Codecs.DEFAULT ) );
+
+    if( options.contains( "--map-codec" ) )
+      Codecs.setMapOutputCodec( properties, option( options, "--map-codec", null ) );
+
+    // --parallel runs every job in this JVM, each map task on that many threads, see ParallelMapRunner
+    if( options.contains( "--parallel" ) )
+      ParallelMapRunner.setLocalParallelism( properties, Integer.parseInt( option( options, "--parallel", null ) ) );
+
+    if( options.contains( "--benchmark-codecs" ) )
+      {
+      benchmarkCodecs( properties, inputPath, outputPath );
+      return;
+      }
+
     FlowConnector flowConnector = new FlowConnector( properties );
-    CascadeConnector cascadeConnector = new CascadeConnector();
 
-    String inputPath = args[ 0 ];
-    String logsPath = args[ 1 ] + "/logs/";
-    String arrivalRatePath = args[ 1 ] + "/arrivalrate/";
-    String arrivalRateSecPath = arrivalRatePath + "sec";
-    String arrivalRateMinPath = arrivalRatePath + "min";
-
-    // create an assembly to import an Apache log file and store on DFS
-    // declares: "time", "method", "event", "status", "size"
-    Fields apacheFields = new Fields( "ip", "time", "method", "event", "status", "size" );
+    if( options.contains( "--benchmark" ) )
+      {
+      benchmark( flowConnector, inputPath, outputPath, writeLogs );
+      return;
+      }
+
+    if( options.contains( "--incremental" ) )
+      {
+      new Incremental( flowConnector, inputPath, outputPath ).run();
+      return;
+      }
+
+    // --ordered range partitions the arrival rates by time into that many part files, see TimeOrderedSort
+    int orderedParts = Integer.parseInt( option( options, "--ordered", "0" ) );
+
+    Flow[] flows = fused ? createFusedFlows( flowConnector, inputPath, outputPath, writeLogs, orderedParts ) : createFlows( flowConnector, inputPath, outputPath, orderedParts );
+
+    // connect the flows by their dependencies, order is not significant
+    Cascade cascade = new CascadeConnector().connect( flows );
+
+    // execute the cascade, which in turn executes each flow in dependency order
+    cascade.complete();
+
+    // the tuples and sampled time per tuple of every metered operation, also found in the job counters
+    Meter.printSummary( System.out, flows );
+    }
+
+  /**
+   * Method createFlows creates the import flow, storing the parsed log on DFS, and the arrival rate flow reading
+   * it back.
+   */
+  public static Flow[] createFlows( FlowConnector flowConnector, String inputPath, String outputPath )
+    {
+    return createFlows( flowConnector, inputPath, outputPath, 0 );
+    }
+
+  /**
+   * Method createFlows creates the import and arrival rate flows, followed, if orderedParts is positive, by the flows
+   * range partitioning the arrival rates by time into that many part files, see {@link TimeOrderedSort}.
+   */
+  public static Flow[] createFlows( FlowConnector flowConnector, String inputPath, String outputPath, int orderedParts )
+    {
+    Pipe importPipe = createImportPipe( new Pipe( "import" ) );
+
+    // connect the assembly to source and sink taps
+    Flow importLogFlow = flowConnector.connect( createLogTap( inputPath ), createParsedLogTap( outputPath ), importPipe );
+
+    // split the parsed log into the arrival rate counts and the visitor sketches
+    Pipe arrivalRatePipe = new Pipe( "arrival rate" );
+    SubAssembly rollupPipe = createArrivalRatePipe( arrivalRatePipe );
+    Pipe visitorsPipe = createVisitorsPipe( arrivalRatePipe );
+
+    Map<String, Tap> sinks = createArrivalRateSinks( arrivalRatePath( outputPath, orderedParts ) );
+    sinks.put( "visitors", createVisitorsSink( outputPath ) );
+
+    // connect the assembly to the source and sink taps
+    // only read the fields counted and sketched, "time" as a long
+    Tap parsedLogTap = createParsedLogTap( outputPath, new Fields( "ip", "time", "event" ) );
+    Flow arrivalRateFlow = flowConnector.connect( parsedLogTap, sinks, tails( rollupPipe, visitorsPipe ) );
+
+    // optionally print out the arrivalRateFlow to a graph file for import into a graphics package
+    //arrivalRateFlow.writeDOT( "arrivalrate.dot" );
+
+    return orderFlows( flowConnector, outputPath, orderedParts, importLogFlow, arrivalRateFlow );
+    }
+
+  /**
+   * Method createFusedFlows creates a single flow that parses and counts the log in one pass, optionally teeing the
+   * parsed log off to the same place {@link #createFlows} stores it.
+   */
+  public static Flow[] createFusedFlows( FlowConnector flowConnector, String inputPath, String outputPath, boolean writeLogs )
+    {
+    return createFusedFlows( flowConnector, inputPath, outputPath, writeLogs, 0 );
+    }
+
+  /**
+   * Method createFusedFlows creates the fused flow, followed, if orderedParts is positive, by the flows range
+   * partitioning the arrival rates by time into that many part files, see {@link TimeOrderedSort}.
+   */
+  public static Flow[] createFusedFlows( FlowConnector flowConnector, String inputPath, String outputPath, boolean writeLogs, int orderedParts )
+    {
+    Pipe importPipe = createImportPipe( new Pipe( "import" ) );
+
+    // split the parsed log, two branches are counted and sketched, the other is optionally stored as is
+    Pipe arrivalRatePipe = new Pipe( "arrival rate", importPipe );
+    SubAssembly rollupPipe = createArrivalRatePipe( arrivalRatePipe );
+    Pipe visitorsPipe = createVisitorsPipe( arrivalRatePipe );
+
+    Map<String, Tap> sinks = createArrivalRateSinks( arrivalRatePath( outputPath, orderedParts ) );
+    sinks.put( "visitors", createVisitorsSink( outputPath ) );
+
+    if( !writeLogs )
+      return orderFlows( flowConnector, outputPath, orderedParts, flowConnector.connect( "arrival rate", createLogTap( inputPath ), sinks, tails( rollupPipe, visitorsPipe ) ) );
+
+    sinks.put( "logs", createParsedLogTap( outputPath ) );
+
+    Pipe[] tails = tails( rollupPipe, visitorsPipe, new Pipe( "logs", importPipe ) );
+
+    return orderFlows( flowConnector, outputPath, orderedParts, flowConnector.connect( "arrival rate", createLogTap( inputPath ), sinks, tails ) );
+    }
+
+  // the arrival rates are written in place, or under "unordered" if they are range partitioned into place afterwards
+  static String arrivalRatePath( String outputPath, int orderedParts )
+    {
+    return orderedParts > 0 ? outputPath + "/unordered/arrivalrate/" : outputPath + "/arrivalrate/";
+    }
+
+  // the given flows, followed by a flow per granularity range partitioning its arrival rates into place
+  static Flow[] orderFlows( FlowConnector flowConnector, String outputPath, int orderedParts, Flow... flows )
+    {
+    if( orderedParts <= 0 )
+      return flows;
+
+    Flow[] orderedFlows = Arrays.copyOf( flows, flows.length + granularityPaths.length );
+
+    for( int i = 0; i < granularityPaths.length; i++ )
+      {
+      String unorderedPath = arrivalRatePath( outputPath, orderedParts ) + granularityPaths[ i ];
+      String orderedPath = outputPath + "/arrivalrate/" + granularityPaths[ i ];
+
+      orderedFlows[ flows.length + i ] = TimeOrderedSort.createFlow( "order " + granularityPaths[ i ], flowConnector.getProperties(), unorderedPath, orderedPath, orderedParts );
+      }
+
+    return orderedFlows;
+    }
+
+  // the tails of the given assembly followed by the given pipes
+  private static Pipe[] tails( SubAssembly assembly, Pipe... pipes )
+    {
+    Pipe[] assemblyTails = assembly.getTails();
+    Pipe[] tails = new Pipe[ assemblyTails.length + pipes.length ];
+
+    System.arraycopy( assemblyTails, 0, tails, 0, assemblyTails.length );
+    System.arraycopy( pipes, 0, tails, assemblyTails.length, pipes.length );
+
+    return tails;
+    }
+
+  // create an assembly to import an Apache log file
+  static Pipe createImportPipe( Pipe pipe )
+    {
     String apacheRegex = "^([^ ]*) +[^ ]* +[^ ]* +\\[([^]]*)\\] +\\\"([^ ]*) ([^ ]*) [^ ]*\\\" ([^ ]*) ([^ ]*).*$";
     int[] apacheGroups = {1, 2, 3, 4, 5, 6};
     RegexParser parser = new RegexParser( apacheFields, apacheRegex, apacheGroups );
-    Pipe importPipe = new Each( "import", new Fields( "line" ), parser );
 
-    // create tap to read a resource from the local file system, if not an url for an external resource
-    // Lfs allows for relative paths
-    Tap logTap =
-      inputPath.matches( "^[^:]+://.*" ) ? new Hfs( new TextLine(), inputPath ) : new Lfs( new TextLine(), inputPath );
-    // create a tap to read/write from the default filesystem
-    Tap parsedLogTap = new Hfs( apacheFields, logsPath );
+    return new Each( pipe, new Fields( "line" ), MeteredFunction.meter( parser ) );
+    }
 
-    // connect the assembly to source and sink taps
-    Flow importLogFlow = flowConnector.connect( logTap, parsedLogTap, importPipe );
+  // create tap to read a resource from the local file system, if not an url for an external resource
+  // Lfs allows for relative paths, local files are memory mapped instead of streamed
+  static Tap createLogTap( String inputPath )
+    {
+    return inputPath.matches( "^[^:]+://.*" ) ? new Hfs( new TextLine(), inputPath ) : new Lfs( new MappedTextLine(), inputPath );
+    }
 
-    // create an assembly to parse out the time field into a timestamp
-    // then count the number of requests per second and per minute
+  // create a tap to write the parsed log as typed binary records to the default filesystem
+  static Tap createParsedLogTap( String outputPath )
+    {
+    return createParsedLogTap( outputPath, apacheFields );
+    }
 
-    // apply a text parser to create a timestamp with 'second' granularity
-    // declares field "ts"
-    DateParser dateParser = new DateParser( new Fields( "ts" ), "dd/MMM/yyyy:HH:mm:ss Z" );
-    Pipe tsPipe = new Each( "arrival rate", new Fields( "time" ), dateParser, Fields.RESULTS );
+  // create a tap to read the given fields of the parsed log, the other fields are skipped without being decoded
+  static Tap createParsedLogTap( String outputPath, Fields fields )
+    {
+    return new Hfs( new ApacheLogScheme( fields ), outputPath + "/logs/" );
+    }
+
+  // create an assembly to parse out the time field into a timestamp
+  // then count the number of requests per second, minute, hour and day, across all the given pipes
+  static SubAssembly createArrivalRatePipe( Pipe... pipes )
+    {
+    Pipe[] tsPipes = new Pipe[ pipes.length ];
+
+    // apply a text parser to create a timestamp with 'second' granularity, and its 'day' the rollup groups on
+    // declares fields "ts" and "td"
+    for( int i = 0; i < pipes.length; i++ )
+      tsPipes[ i ] = new Each( pipes[ i ], new Fields( "time" ), new MeteredFunction<ApacheTime>( new ApacheTimeParser( new Fields( "ts", "td" ) ) ), Fields.RESULTS );
 
-    // name the per second assembly and split on tsPipe
-    Pipe tsCountPipe = new Pipe( "tsCount", tsPipe );
-    tsCountPipe = new GroupBy( tsCountPipe, new Fields( "ts" ) );
-    tsCountPipe = new Every( tsCountPipe, Fields.GROUP, new Count() );
+    // count every granularity in a single pass, the data is only shuffled once, at 'second' granularity
+    // declares the tails "tsCount", "tmCount", "thCount" and "tdCount"
+    return new ArrivalRateRollup( tsPipes, granularities );
+    }
+
+  // create an assembly to estimate the distinct visitors and the most requested events per minute
+  // declares "tm", "visitors" and "events", named "visitors"
+  static Pipe createVisitorsPipe( Pipe pipe )
+    {
+    pipe = new Pipe( "visitors", pipe );
+    pipe = new Each( pipe, new Fields( "time" ), new MeteredFunction<ApacheTime>( "ApacheTimeParser visitors", new ApacheTimeParser( new Fields( "ts", "tm" ) ) ), Fields.ALL );
 
-    // apply expression to create a timestamp with 'minute' granularity
-    // declares field "tm"
-    Pipe tmPipe = new Each( tsPipe, new ExpressionFunction( new Fields( "tm" ), "ts - (ts % (60 * 1000))", long.class ) );
+    // build the sketches per minute map side, so only one pair of sketches per minute and mapper is shuffled
+    Fields sketchFields = new Fields( "tm", "ipSketch", "eventSketch" );
+    int sketchCapacity = PartialSketches.capacityFor( sketchMemory, HyperLogLog.DEFAULT_PRECISION, topCapacity );
+    PartialSketches sketches = new PartialSketches( sketchFields, sketchCapacity, HyperLogLog.DEFAULT_PRECISION, topCapacity );
+    pipe = new Each( pipe, new Fields( "tm", "ip", "event" ), new MeteredFunction<PartialSketches.Context>( sketches ), Fields.RESULTS );
 
-    // name the per minute assembly and split on tmPipe
-    Pipe tmCountPipe = new Pipe( "tmCount", tmPipe );
-    tmCountPipe = new GroupBy( tmCountPipe, new Fields( "tm" ) );
-    tmCountPipe = new Every( tmCountPipe, Fields.GROUP, new Count() );
+    // merge the sketches, emitting the estimated distinct ips and the ten most frequent events next to each minute
+    pipe = new GroupBy( pipe, new Fields( "tm" ) );
+    pipe = new Every( pipe, new Fields( "ipSketch" ), new DistinctCount( new Fields( "visitors" ) ) );
+    pipe = new Every( pipe, new Fields( "eventSketch" ), new TopN( new Fields( "events" ), topCapacity, 10 ) );
 
-    // create taps to write the results the default filesystem, using the given fields
-    Tap tsSinkTap = new Hfs( new TextLine(), arrivalRateSecPath );
-    Tap tmSinkTap = new Hfs( new TextLine(), arrivalRateMinPath );
+    return pipe;
+    }
+
+  static Tap createVisitorsSink( String outputPath )
+    {
+    return new Hfs( new TextLine(), outputPath + "/visitors/min" );
+    }
+
+  // create taps to write the results the default filesystem, using the given fields
+  static Map<String, Tap> createArrivalRateSinks( String arrivalRatePath )
+    {
+    String[] rollupNames = new String[ granularities.length ];
+    Tap[] sinkTaps = new Tap[ granularities.length ];
+
+    for( int i = 0; i < granularities.length; i++ )
+      {
+      rollupNames[ i ] = granularities[ i ].getName();
+      sinkTaps[ i ] = new Hfs( new TextLine(), arrivalRatePath + granularityPaths[ i ] );
+      }
 
     // a convenience method for binding taps and pipes, order is significant
-    Map<String, Tap> sinks = Cascades.tapsMap( Pipe.pipes( tsCountPipe, tmCountPipe ), Tap.taps( tsSinkTap, tmSinkTap ) );
+    return Cascades.tapsMap( rollupNames, sinkTaps );
+    }
 
-    // connect the assembly to the source and sink taps
-    Flow arrivalRateFlow = flowConnector.connect( parsedLogTap, sinks, tsCountPipe, tmCountPipe );
+  /**
+   * Method benchmark runs the two flow cascade and the fused flow over the same input, prints their wall time and
+   * the DFS bytes they wrote and read back, and fails if their arrival rates differ.
+   */
+  static void benchmark( FlowConnector flowConnector, String inputPath, String outputPath, boolean writeLogs ) throws IOException
+    {
+    String cascadePath = outputPath + "/cascade";
+    String fusedPath = outputPath + "/fused";
 
-    // optionally print out the arrivalRateFlow to a graph file for import into a graphics package
-    //arrivalRateFlow.writeDOT( "arrivalrate.dot" );
+    long cascadeTime = run( createFlows( flowConnector, inputPath, cascadePath ) );
+    long fusedTime = run( createFusedFlows( flowConnector, inputPath, fusedPath, writeLogs ) );
 
-    // connect the flows by their dependencies, order is not significant
-    Cascade cascade = cascadeConnector.connect( importLogFlow, arrivalRateFlow );
+    // only the cascade reads anything back from DFS, the parsed log
+    System.out.println( "mode\twall ms\tdfs bytes written\tdfs bytes read" );
+    System.out.println( "cascade\t" + cascadeTime + "\t" + bytes( cascadePath ) + "\t" + bytes( cascadePath + "/logs" ) );
+    System.out.println( "fused\t" + fusedTime + "\t" + bytes( fusedPath ) + "\t0" );
 
-    // execute the cascade, which in turn executes each flow in dependency order
-    cascade.complete();
+    for( String granularityPath : granularityPaths )
+      {
+      String path = "/arrivalrate/" + granularityPath;
+
+      if( !readLines( cascadePath + path ).equals( readLines( fusedPath + path ) ) )
+        throw new IllegalStateException( "fused results differ from cascade results in: " + path );
+      }
+    }
+
+  /**
+   * Method benchmarkCodecs runs the two flow cascade once per codec, compressing both the parsed log and the map
+   * output, prints the wall time and the DFS bytes written and read back, and fails if the arrival rates differ.
+   */
+  static void benchmarkCodecs( Properties properties, String inputPath, String outputPath ) throws IOException
+    {
+    String[] codecs = Codecs.getAvailableCodecs();
+
+    if( !Arrays.asList( codecs ).contains( Codecs.GZIP ) )
+      System.out.println( "skipping gzip, it needs the native hadoop library" );
+
+    System.out.println( "codec\twall ms\tdfs bytes written\tdfs bytes read" );
+
+    for( String codec : codecs )
+      {
+      Properties codecProperties = new Properties();
+      codecProperties.putAll( properties );
+      Codecs.setCodec( codecProperties, codec );
+      Codecs.setMapOutputCodec( codecProperties, codec );
+
+      String codecPath = outputPath + "/" + codec;
+      long time = run( createFlows( new FlowConnector( codecProperties ), inputPath, codecPath ) );
+
+      // the parsed log is the only thing read back from DFS
+      System.out.println( codec + "\t" + time + "\t" + bytes( codecPath ) + "\t" + bytes( codecPath + "/logs" ) );
+      }
+
+    for( String granularityPath : granularityPaths )
+      {
+      String path = "/arrivalrate/" + granularityPath;
+      List<String> expected = readLines( outputPath + "/" + codecs[ 0 ] + path );
+
+      for( int i = 1; i < codecs.length; i++ )
+        {
+        if( !expected.equals( readLines( outputPath + "/" + codecs[ i ] + path ) ) )
+          throw new IllegalStateException( codecs[ i ] + " results differ from " + codecs[ 0 ] + " results in: " + path );
+        }
+      }
+    }
+
+  // the value following the given option, or the default value if the option is absent
+  static String option( List<String> options, String name, String defaultValue )
+    {
+    int index = options.indexOf( name );
+
+    if( index == -1 )
+      return defaultValue;
+
+    if( index == options.size() - 1 )
+      throw new IllegalArgumentException( "missing value for: " + name );
+
+    return options.get( index + 1 );
+    }
+
+  private static long run( Flow[] flows )
+    {
+    long startTime = System.currentTimeMillis();
+
+    new CascadeConnector().connect( flows ).complete();
+
+    return System.currentTimeMillis() - startTime;
+    }
+
+  private static long bytes( String path ) throws IOException
+    {
+    Path dfsPath = new Path( path );
+
+    return dfsPath.getFileSystem( new JobConf() ).getContentSummary( dfsPath ).getLength();
+    }
+
+  // every line of every part file, sorted, since part files do not share a global order
+  private static List<String> readLines( String path ) throws IOException
+    {
+    Path dfsPath = new Path( path );
+    FileSystem fileSystem = dfsPath.getFileSystem( new JobConf() );
+    List<String> lines = new ArrayList<String>();
+
+    for( FileStatus status : fileSystem.listStatus( dfsPath ) )
+      {
+      if( status.isDir() || !status.getPath().getName().startsWith( "part-" ) )
+        continue;
+
+      BufferedReader reader = new BufferedReader( new InputStreamReader( fileSystem.open( status.getPath() ), "UTF-8" ) );
+
+      try
+        {
+        String line;
+
+        while( ( line = reader.readLine() ) != null )
+          lines.add( line );
+        }
+      finally
+        {
+        reader.close();
+        }
+      }
+
+    Collections.sort( lines );
+
+    return lines;
     }
   }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Class PartialCount counts its argument tuples in memory and emits each distinct argument tuple with its partial
+ * count, so only one tuple per key and flush leaves the mapper.
+ * <p/>
+ * At most capacity keys are held at once, all counts are flushed when a new key would exceed it, and whatever is left
+ * is flushed when the operation is cleaned up. The partial counts must be summed after grouping on the same fields.
+ */
+public class PartialCount extends BaseOperation<PartialCount.Context> implements Function<PartialCount.Context>
+  {
+  public static final int DEFAULT_CAPACITY = 10000;
+
+  private final int capacity;
+
+  public static class Context
+    {
+    final Map<Tuple, long[]> counts = new LinkedHashMap<Tuple, long[]>();
+    TupleEntryCollector outputCollector;
+    }
+
+  /**
+   * Constructor PartialCount creates a new PartialCount instance.
+   *
+   * @param groupFields of type Fields, the fields counted on, declared in front of countField
+   * @param countField  of type Fields
+   * @param capacity    of type int, the maximum number of keys held before flushing
+   */
+  public PartialCount( Fields groupFields, Fields countField, int capacity )
+    {
+    super( groupFields.size(), groupFields.append( countField ) );
+
+    if( countField.size() != 1 )
+      throw new IllegalArgumentException( "countField may only declare one field, was: " + countField.print() );
+
+    if( capacity < 1 )
+      throw new IllegalArgumentException( "capacity must be greater than zero, was: " + capacity );
+
+    this.capacity = capacity;
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    // counts are accumulated across calls, so an argument must never be seen twice
+    return false;
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    operationCall.setContext( new Context() );
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    Context context = functionCall.getContext();
+    Tuple key = functionCall.getArguments().getTuple();
+    long[] count = context.counts.get( key );
+
+    // keep the collector so the remaining counts can be flushed on cleanup
+    context.outputCollector = functionCall.getOutputCollector();
+
+    if( count == null )
+      {
+      if( context.counts.size() >= capacity )
+        flush( context );
+
+      count = new long[ 1 ];
+      context.counts.put( new Tuple( key ), count );
+      }
+
+    count[ 0 ]++;
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    Context context = operationCall.getContext();
+
+    if( context.outputCollector != null )
+      flush( context );
+
+    operationCall.setContext( null );
+    }
+
+  private void flush( Context context )
+    {
+    for( Map.Entry<Tuple, long[]> entry : context.counts.entrySet() )
+      {
+      Tuple result = new Tuple( entry.getKey() );
+      result.add( entry.getValue()[ 0 ] );
+
+      context.outputCollector.add( result );
+      }
+
+    context.counts.clear();
+    }
+  }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Class PartialSketches builds, per distinct value of its first argument, a {@link HyperLogLog} of its second
+ * argument and a {@link SpaceSaving} summary of its third, and emits the key with both encoded sketches.
+ * <p/>
+ * Like {@link PartialCount}, at most capacity keys are held, they are all flushed when a new key would exceed it, and
+ * the rest are flushed on cleanup. The sketches are merged after grouping with {@link DistinctCount} and {@link TopN}.
+ */
+public class PartialSketches extends BaseOperation<PartialSketches.Context> implements Function<PartialSketches.Context>
+  {
+  // a rough estimate of the heap used by a SpaceSaving counter, its value and its map entry
+  static final int COUNTER_BYTES = 160;
+
+  private final int capacity;
+  private final int precision;
+  private final int topCapacity;
+
+  public static class Context
+    {
+    final Map<Comparable, Sketches> sketches = new LinkedHashMap<Comparable, Sketches>();
+    TupleEntryCollector outputCollector;
+    }
+
+  private static class Sketches
+    {
+    final HyperLogLog distinct;
+    final SpaceSaving top;
+
+    Sketches( int precision, int topCapacity )
+      {
+      distinct = new HyperLogLog( precision );
+      top = new SpaceSaving( topCapacity );
+      }
+    }
+
+  /**
+   * Constructor PartialSketches creates a new PartialSketches instance.
+   *
+   * @param fieldDeclaration of type Fields, declares the key, the distinct sketch and the top sketch
+   * @param capacity         of type int, the maximum number of keys held before flushing
+   * @param precision        of type int, the {@link HyperLogLog} precision
+   * @param topCapacity      of type int, the number of {@link SpaceSaving} counters
+   */
+  public PartialSketches( Fields fieldDeclaration, int capacity, int precision, int topCapacity )
+    {
+    super( 3, fieldDeclaration );
+
+    if( fieldDeclaration.size() != 3 )
+      throw new IllegalArgumentException( "fieldDeclaration must declare three fields, was: " + fieldDeclaration.print() );
+
+    this.capacity = capacity;
+    this.precision = precision;
+    this.topCapacity = topCapacity;
+    }
+
+  /**
+   * Method capacityFor returns the number of keys whose sketches, at their largest, fit in the given heap bytes.
+   *
+   * @param memory      of type long
+   * @param precision   of type int, the {@link HyperLogLog} precision
+   * @param topCapacity of type int, the number of {@link SpaceSaving} counters
+   * @return int
+   */
+  public static int capacityFor( long memory, int precision, int topCapacity )
+    {
+    long keyBytes = ( 1L << precision ) + (long) topCapacity * COUNTER_BYTES;
+
+    return (int) Math.max( 1, Math.min( Integer.MAX_VALUE, memory / keyBytes ) );
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    // sketches are accumulated across calls, so an argument must never be seen twice
+    return false;
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    operationCall.setContext( new Context() );
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    Context context = functionCall.getContext();
+    TupleEntry arguments = functionCall.getArguments();
+    Comparable key = arguments.get( 0 );
+    Sketches sketches = context.sketches.get( key );
+
+    // keep the collector so the remaining sketches can be flushed on cleanup
+    context.outputCollector = functionCall.getOutputCollector();
+
+    if( sketches == null )
+      {
+      if( context.sketches.size() >= capacity )
+        flush( context );
+
+      sketches = new Sketches( precision, topCapacity );
+      context.sketches.put( key, sketches );
+      }
+
+    sketches.distinct.offer( arguments.getString( 1 ) );
+    sketches.top.offer( arguments.getString( 2 ) );
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    Context context = operationCall.getContext();
+
+    if( context.outputCollector != null )
+      flush( context );
+
+    operationCall.setContext( null );
+    }
+
+  private void flush( Context context )
+    {
+    for( Map.Entry<Comparable, Sketches> entry : context.sketches.entrySet() )
+      {
+      Sketches sketches = entry.getValue();
+
+      context.outputCollector.add( new Tuple( entry.getKey(), sketches.distinct.encode(), sketches.top.encode() ) );
+      }
+
+    context.sketches.clear();
+    }
+  }
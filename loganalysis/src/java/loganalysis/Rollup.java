@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.util.Iterator;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Buffer;
+import cascading.operation.BufferCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Class Rollup sums a stream of timestamp and count pairs, sorted by timestamp, into one running total per
+ * period. Every time a timestamp crosses into a new period the finished total is emitted as the period index,
+ * the period start time and the count.
+ * <p/>
+ * The periods must nest in the grouping, i.e. the group must never split a period across two groups.
+ */
+public class Rollup extends BaseOperation implements Buffer
+  {
+  private final long[] periods;
+
+  /**
+   * Constructor Rollup creates a new Rollup instance.
+   *
+   * @param fieldDeclaration of type Fields, declares the period index, the period start time and the count
+   * @param periods          of type long[], the period lengths in milliseconds
+   */
+  public Rollup( Fields fieldDeclaration, long... periods )
+    {
+    super( 2, fieldDeclaration );
+
+    if( fieldDeclaration.size() != 3 )
+      throw new IllegalArgumentException( "fieldDeclaration must declare three fields, was: " + fieldDeclaration.print() );
+
+    this.periods = periods;
+    }
+
+  public void operate( FlowProcess flowProcess, BufferCall bufferCall )
+    {
+    TupleEntryCollector outputCollector = bufferCall.getOutputCollector();
+    Iterator<TupleEntry> arguments = bufferCall.getArgumentsIterator();
+
+    long[] starts = new long[ periods.length ];
+    long[] counts = new long[ periods.length ];
+
+    while( arguments.hasNext() )
+      {
+      Tuple tuple = arguments.next().getTuple();
+      long time = tuple.getLong( 0 );
+      long count = tuple.getLong( 1 );
+
+      for( int i = 0; i < periods.length; i++ )
+        {
+        long start = time - ( time % periods[ i ] );
+
+        if( counts[ i ] != 0 && start != starts[ i ] )
+          {
+          outputCollector.add( new Tuple( i, starts[ i ], counts[ i ] ) );
+          counts[ i ] = 0;
+          }
+
+        starts[ i ] = start;
+        counts[ i ] += count;
+        }
+      }
+
+    for( int i = 0; i < periods.length; i++ )
+      {
+      if( counts[ i ] != 0 )
+        outputCollector.add( new Tuple( i, starts[ i ], counts[ i ] ) );
+      }
+    }
+  }
@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class SpaceSaving tracks the most frequent values offered to it with at most capacity counters. When full, the
+ * least frequent counter is taken over by the new value, which inherits its count as an over estimate.
+ * <p/>
+ * Any value more frequent than 1 / capacity of the total is guaranteed to be tracked. Instances merge by summing
+ * their counters and keeping the capacity largest, so partial summaries can be built map side, see {@link #merge}
+ * for how the guarantee is kept for the merged summary.
+ * <p/>
+ * The counters are kept in a stream summary, a list of buckets of counters with the same count, ordered by count, so
+ * offering a value, and finding the least frequent counter to take over, takes constant time.
+ */
+public class SpaceSaving
+  {
+  private static final Comparator<Counter> BY_COUNT = new Comparator<Counter>()
+  {
+  public int compare( Counter lhs, Counter rhs )
+    {
+    if( lhs.bucket.count != rhs.bucket.count )
+      return lhs.bucket.count > rhs.bucket.count ? -1 : 1;
+
+    return lhs.value.compareTo( rhs.value );
+    }
+  };
+
+  private static class Bucket
+    {
+    final long count;
+    Bucket previous;
+    Bucket next;
+    Counter first;
+
+    Bucket( long count )
+      {
+      this.count = count;
+      }
+    }
+
+  private static class Counter
+    {
+    String value;
+    long error;
+    Bucket bucket;
+    Counter previous;
+    Counter next;
+    }
+
+  private final int capacity;
+  private final Map<String, Counter> counters = new HashMap<String, Counter>();
+
+  // the bucket with the lowest count, and the one with the highest
+  private Bucket lowest;
+  private Bucket highest;
+
+  public SpaceSaving( int capacity )
+    {
+    if( capacity < 1 )
+      throw new IllegalArgumentException( "capacity must be greater than zero, was: " + capacity );
+
+    this.capacity = capacity;
+    }
+
+  public void offer( String value )
+    {
+    Counter counter = counters.get( value );
+
+    if( counter != null )
+      {
+      increment( counter );
+      return;
+      }
+
+    if( counters.size() < capacity )
+      {
+      counter = new Counter();
+      counter.value = value;
+      counters.put( value, counter );
+
+      Bucket bucket = lowest != null && lowest.count == 1 ? lowest : insertBucket( null, 1 );
+      attach( counter, bucket );
+      return;
+      }
+
+    // take over a least frequent counter, its count is the error of the new value
+    counter = lowest.first;
+    counters.remove( counter.value );
+
+    counter.value = value;
+    counter.error = lowest.count;
+    counters.put( value, counter );
+
+    increment( counter );
+    }
+
+  public void clear()
+    {
+    counters.clear();
+    lowest = null;
+    highest = null;
+    }
+
+  /** returns the n most frequent values, most frequent first, as "value=count" separated by spaces */
+  public String top( int n )
+    {
+    StringBuilder builder = new StringBuilder();
+
+    for( Counter counter : sorted() )
+      {
+      if( n-- == 0 )
+        break;
+
+      if( builder.length() != 0 )
+        builder.append( ' ' );
+
+      builder.append( counter.value ).append( '=' ).append( counter.bucket.count );
+      }
+
+    return builder.toString();
+    }
+
+  /** encodes every counter as "count,error,length:value" so the summary can be stored in a tuple */
+  public String encode()
+    {
+    StringBuilder builder = new StringBuilder();
+
+    for( Counter counter : counters.values() )
+      {
+      builder.append( counter.bucket.count ).append( ',' ).append( counter.error ).append( ',' );
+      builder.append( counter.value.length() ).append( ':' ).append( counter.value );
+      }
+
+    return builder.toString();
+    }
+
+  /**
+   * Method merge merges an encoded summary into this one. A value missing from either summary may still have been seen
+   * there as often as its least frequent counter, if it is full, so that count is added to both its count and error.
+   *
+   * @param encoded of type String, see {@link #encode()}
+   */
+  public void merge( String encoded )
+    {
+    // value -> {count, error}
+    Map<String, long[]> other = decode( encoded );
+    long minimum = minimum();
+    long otherMinimum = 0;
+
+    if( other.size() >= capacity )
+      {
+      otherMinimum = Long.MAX_VALUE;
+
+      for( long[] counter : other.values() )
+        otherMinimum = Math.min( otherMinimum, counter[ 0 ] );
+      }
+
+    Map<String, long[]> merged = new HashMap<String, long[]>();
+
+    for( Counter counter : counters.values() )
+      {
+      long[] otherCounter = other.remove( counter.value );
+
+      if( otherCounter == null )
+        merged.put( counter.value, new long[]{counter.bucket.count + otherMinimum, counter.error + otherMinimum} );
+      else
+        merged.put( counter.value, new long[]{counter.bucket.count + otherCounter[ 0 ], counter.error + otherCounter[ 1 ]} );
+      }
+
+    for( Map.Entry<String, long[]> entry : other.entrySet() )
+      merged.put( entry.getKey(), new long[]{entry.getValue()[ 0 ] + minimum, entry.getValue()[ 1 ] + minimum} );
+
+    List<Map.Entry<String, long[]>> entries = new ArrayList<Map.Entry<String, long[]>>( merged.entrySet() );
+
+    Collections.sort( entries, new Comparator<Map.Entry<String, long[]>>()
+    {
+    public int compare( Map.Entry<String, long[]> lhs, Map.Entry<String, long[]> rhs )
+      {
+      if( lhs.getValue()[ 0 ] != rhs.getValue()[ 0 ] )
+        return lhs.getValue()[ 0 ] > rhs.getValue()[ 0 ] ? -1 : 1;
+
+      return lhs.getKey().compareTo( rhs.getKey() );
+      }
+    } );
+
+    clear();
+
+    // keep the capacity largest, added from the lowest count up so each lands in the highest bucket
+    for( int i = Math.min( entries.size(), capacity ) - 1; i >= 0; i-- )
+      {
+      Map.Entry<String, long[]> entry = entries.get( i );
+      long count = entry.getValue()[ 0 ];
+
+      Counter counter = new Counter();
+      counter.value = entry.getKey();
+      counter.error = entry.getValue()[ 1 ];
+      counters.put( counter.value, counter );
+
+      Bucket bucket = highest != null && highest.count == count ? highest : insertBucket( highest, count );
+      attach( counter, bucket );
+      }
+    }
+
+  // the most a value that is not tracked can have been seen, zero until the counters are full
+  private long minimum()
+    {
+    return counters.size() < capacity ? 0 : lowest.count;
+    }
+
+  private static Map<String, long[]> decode( String encoded )
+    {
+    Map<String, long[]> decoded = new HashMap<String, long[]>();
+    int pos = 0;
+
+    while( pos < encoded.length() )
+      {
+      int comma = encoded.indexOf( ',', pos );
+      long count = Long.parseLong( encoded.substring( pos, comma ) );
+      int next = encoded.indexOf( ',', comma + 1 );
+      long error = Long.parseLong( encoded.substring( comma + 1, next ) );
+      int colon = encoded.indexOf( ':', next + 1 );
+      int length = Integer.parseInt( encoded.substring( next + 1, colon ) );
+
+      decoded.put( encoded.substring( colon + 1, colon + 1 + length ), new long[]{count, error} );
+
+      pos = colon + 1 + length;
+      }
+
+    return decoded;
+    }
+
+  private List<Counter> sorted()
+    {
+    List<Counter> sorted = new ArrayList<Counter>( counters.values() );
+    Collections.sort( sorted, BY_COUNT );
+
+    return sorted;
+    }
+
+  // moves the counter to the bucket with one more count
+  private void increment( Counter counter )
+    {
+    Bucket bucket = counter.bucket;
+    long count = bucket.count + 1;
+    Bucket next = bucket.next;
+
+    if( next == null || next.count != count )
+      next = insertBucket( bucket, count );
+
+    detach( counter );
+    attach( counter, next );
+    }
+
+  // a new empty bucket after the given one, or first if null
+  private Bucket insertBucket( Bucket previous, long count )
+    {
+    Bucket bucket = new Bucket( count );
+    Bucket next = previous == null ? lowest : previous.next;
+
+    bucket.previous = previous;
+    bucket.next = next;
+
+    if( previous == null )
+      lowest = bucket;
+    else
+      previous.next = bucket;
+
+    if( next == null )
+      highest = bucket;
+    else
+      next.previous = bucket;
+
+    return bucket;
+    }
+
+  private void attach( Counter counter, Bucket bucket )
+    {
+    counter.bucket = bucket;
+    counter.previous = null;
+    counter.next = bucket.first;
+
+    if( bucket.first != null )
+      bucket.first.previous = counter;
+
+    bucket.first = counter;
+    }
+
+  // removes the counter from its bucket, and the bucket from the list if it is left empty
+  private void detach( Counter counter )
+    {
+    Bucket bucket = counter.bucket;
+
+    if( counter.previous == null )
+      bucket.first = counter.next;
+    else
+      counter.previous.next = counter.next;
+
+    if( counter.next != null )
+      counter.next.previous = counter.previous;
+
+    counter.bucket = null;
+    counter.previous = null;
+    counter.next = null;
+
+    if( bucket.first != null )
+      return;
+
+    if( bucket.previous == null )
+      lowest = bucket.next;
+    else
+      bucket.previous.next = bucket.next;
+
+    if( bucket.next == null )
+      highest = bucket.previous;
+    else
+      bucket.next.previous = bucket.previous;
+    }
+  }
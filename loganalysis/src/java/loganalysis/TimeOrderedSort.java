@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import cascading.flow.Flow;
+import cascading.flow.FlowException;
+import cascading.flow.FlowListener;
+import cascading.flow.MapReduceFlow;
+import cascading.flow.MultiMapReducePlanner;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.TextInputFormat;
+import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.mapred.lib.IdentityReducer;
+import org.apache.hadoop.mapred.lib.TotalOrderPartitioner;
+import org.apache.hadoop.util.LineReader;
+
+/**
+ * Class TimeOrderedSort creates flows that re-write tab separated "time count" lines, as written by the arrival rate
+ * sinks, range partitioned by time, so the part files are in time order, both within and across files.
+ * <p/>
+ * When the flow starts, a bounded number of input lines are sampled and the time boundaries of the partitions are
+ * written to "_partitions", a sequence file of LongWritable keys, for the {@link TotalOrderPartitioner}. Once complete
+ * it is copied next to the part files, where part file i holds the times from boundary i - 1, inclusive, to boundary
+ * i, exclusive, so a reader can find the file holding a time window without opening the others.
+ * <p/>
+ * The Hadoop local runner runs a single reducer, whatever the job asks for, so in local mode, as with a single part,
+ * every line is written in time order to a single part file, and no boundaries are sampled or written.
+ */
+public class TimeOrderedSort
+  {
+  public static final String PARTITIONS = "_partitions";
+
+  // the lines sampled, at evenly spaced offsets of the input, so the driver only reads a bounded part of it
+  static final int SAMPLE_SIZE = 10000;
+
+  // the bytes buffered per sampled line, a "time count" line is far shorter
+  private static final int SAMPLE_BUFFER_SIZE = 256;
+
+  /**
+   * Method createFlow creates a flow sorting the lines under inputPath by time into the given number of part files
+   * under outputPath. The lines are re-written unchanged, parts may be empty if there are too few distinct times. In
+   * local mode a single part file is written, see {@link #isLocal(JobConf)}.
+   *
+   * @param name       of type String
+   * @param properties of type Map<Object, Object>, the properties the job is configured with
+   * @param inputPath  of type String
+   * @param outputPath of type String
+   * @param parts      of type int
+   * @return Flow
+   */
+  public static Flow createFlow( String name, Map<Object, Object> properties, String inputPath, String outputPath, int parts )
+    {
+    if( parts < 1 )
+      throw new IllegalArgumentException( "parts must be positive, was: " + parts );
+
+    JobConf jobConf = MultiMapReducePlanner.getJobConf( properties );
+
+    jobConf.setJobName( name );
+    jobConf.setJarByClass( TimeOrderedSort.class );
+
+    jobConf.setInputFormat( TextInputFormat.class );
+    jobConf.setMapperClass( TimeKeyMap.class );
+    jobConf.setMapOutputKeyClass( LongWritable.class );
+    jobConf.setMapOutputValueClass( Text.class );
+
+    // the local runner would run a single reducer, and the partitioner fails on boundaries for more
+    if( isLocal( jobConf ) )
+      parts = 1;
+
+    // the keys arrive sorted, and every time occurs once per granularity
+    jobConf.setReducerClass( IdentityReducer.class );
+    jobConf.setNumReduceTasks( parts );
+
+    // writes "time count" back, as read
+    jobConf.setOutputFormat( TextOutputFormat.class );
+    jobConf.setOutputKeyClass( LongWritable.class );
+    jobConf.setOutputValueClass( Text.class );
+
+    FileInputFormat.setInputPaths( jobConf, new Path( inputPath ) );
+    FileOutputFormat.setOutputPath( jobConf, new Path( outputPath ) );
+
+    // a single reducer sorts every line, without boundaries
+    if( parts == 1 )
+      return new MapReduceFlow( name, jobConf, true );
+
+    jobConf.setPartitionerClass( TotalOrderPartitioner.class );
+
+    // the input directory is only written by the arrival rate flow, and hidden files are not read as input
+    Path partitionsPath = new Path( inputPath, PARTITIONS );
+    TotalOrderPartitioner.setPartitionFile( jobConf, partitionsPath );
+
+    Flow flow = new MapReduceFlow( name, jobConf, true );
+
+    flow.addListener( new PartitionsListener( jobConf, partitionsPath, parts ) );
+
+    return flow;
+    }
+
+  /**
+   * Method isLocal returns true if the jobs of the given conf run in the Hadoop local runner, which runs a single
+   * reducer per job.
+   *
+   * @param jobConf of type JobConf
+   * @return boolean
+   */
+  static boolean isLocal( JobConf jobConf )
+    {
+    return "local".equals( jobConf.get( "mapred.job.tracker", "local" ) );
+    }
+
+  /**
+   * Class TimeKeyMap keys every tab separated "time count" line by its time.
+   */
+  public static class TimeKeyMap extends MapReduceBase implements Mapper<LongWritable, Text, LongWritable, Text>
+    {
+    private final LongWritable time = new LongWritable();
+    private final Text rest = new Text();
+
+    public void map( LongWritable key, Text value, OutputCollector<LongWritable, Text> output, Reporter reporter ) throws IOException
+      {
+      byte[] bytes = value.getBytes();
+      int length = value.getLength();
+      int tab = 0;
+
+      while( tab < length && bytes[ tab ] != '\t' )
+        tab++;
+
+      if( tab == length )
+        throw new IOException( "no tab in line: [" + value + "]" );
+
+      time.set( Long.parseLong( new String( bytes, 0, tab, "UTF-8" ) ) );
+      rest.set( bytes, tab + 1, length - tab - 1 );
+
+      output.collect( time, rest );
+      }
+    }
+
+  // samples the input and writes the partition boundaries before the job runs, and copies them out once done
+  static class PartitionsListener implements FlowListener
+    {
+    private final JobConf jobConf;
+    private final Path partitionsPath;
+    private final int parts;
+
+    PartitionsListener( JobConf jobConf, Path partitionsPath, int parts )
+      {
+      this.jobConf = jobConf;
+      this.partitionsPath = partitionsPath;
+      this.parts = parts;
+      }
+
+    public void onStarting( Flow flow )
+      {
+      try
+        {
+        writePartitions( boundaries( sample( FileInputFormat.getInputPaths( jobConf )[ 0 ] ), parts ) );
+        }
+      catch( IOException exception )
+        {
+        throw new FlowException( "unable to write partitions: " + partitionsPath, exception );
+        }
+      }
+
+    public void onStopping( Flow flow )
+      {
+      }
+
+    public void onCompleted( Flow flow )
+      {
+      Path outputPath = FileOutputFormat.getOutputPath( jobConf );
+
+      try
+        {
+        FileSystem fileSystem = partitionsPath.getFileSystem( jobConf );
+
+        FileUtil.copy( fileSystem, partitionsPath, outputPath.getFileSystem( jobConf ), new Path( outputPath, PARTITIONS ), false, jobConf );
+        }
+      catch( IOException exception )
+        {
+        throw new FlowException( "unable to copy partitions to: " + outputPath, exception );
+        }
+      }
+
+    public boolean onThrowable( Flow flow, Throwable throwable )
+      {
+      return false;
+      }
+
+    // the times of the lines at evenly spaced offsets of every input file, so each part holds about as many lines
+    private long[] sample( Path inputPath ) throws IOException
+      {
+      FileSystem fileSystem = inputPath.getFileSystem( jobConf );
+      List<FileStatus> files = new ArrayList<FileStatus>();
+      long total = 0;
+
+      for( FileStatus status : fileSystem.listStatus( inputPath ) )
+        {
+        String fileName = status.getPath().getName();
+
+        if( status.isDir() || fileName.startsWith( "_" ) || fileName.startsWith( "." ) )
+          continue;
+
+        files.add( status );
+        total += status.getLen();
+        }
+
+      // at most SAMPLE_SIZE offsets in all, and one more per file, small inputs are read whole
+      long step = Math.max( 1, ( total + SAMPLE_SIZE - 1 ) / SAMPLE_SIZE );
+      long[] sample = new long[ SAMPLE_SIZE + files.size() ];
+      int size = 0;
+
+      for( FileStatus status : files )
+        {
+        FSDataInputStream input = fileSystem.open( status.getPath() );
+
+        try
+          {
+          size = sample( input, status.getLen(), step, sample, size );
+          }
+        finally
+          {
+          input.close();
+          }
+        }
+
+      return Arrays.copyOf( sample, size );
+      }
+
+    // reads the line starting at or after every step bytes, each line at most once
+    static int sample( FSDataInputStream input, long length, long step, long[] sample, int size ) throws IOException
+      {
+      Text line = new Text();
+      LineReader reader = null;
+      long position = 0;
+
+      for( long offset = 0; offset < length && size < sample.length; offset += step )
+        {
+        // the line the offset falls in was read already
+        if( reader != null && offset < position )
+          continue;
+
+        // seek past the lines between the offsets, a line starting right at the offset is read, as in a split
+        if( reader == null || offset > position )
+          {
+          position = offset == 0 ? 0 : offset - 1;
+          input.seek( position );
+          reader = new LineReader( input, SAMPLE_BUFFER_SIZE );
+
+          if( offset != 0 )
+            position += reader.readLine( line );
+          }
+
+        int consumed = reader.readLine( line );
+
+        if( consumed == 0 )
+          break;
+
+        position += consumed;
+
+        if( line.getLength() != 0 )
+          sample[ size++ ] = parseTime( line.toString() );
+        }
+
+      return size;
+      }
+
+    private void writePartitions( long[] boundaries ) throws IOException
+      {
+      FileSystem fileSystem = partitionsPath.getFileSystem( jobConf );
+      SequenceFile.Writer writer = SequenceFile.createWriter( fileSystem, jobConf, partitionsPath, LongWritable.class, NullWritable.class );
+
+      try
+        {
+        LongWritable key = new LongWritable();
+
+        for( long boundary : boundaries )
+          {
+          key.set( boundary );
+          writer.append( key, NullWritable.get() );
+          }
+        }
+      finally
+        {
+        writer.close();
+        }
+      }
+    }
+
+  // the time of a "time count" line
+  static long parseTime( String line )
+    {
+    int tab = line.indexOf( '\t' );
+
+    return Long.parseLong( tab == -1 ? line : line.substring( 0, tab ) );
+    }
+
+  /**
+   * Method boundaries returns the parts - 1 strictly increasing boundaries splitting the given sample into parts of
+   * about equal size. If the sample has too few distinct times, repeated boundaries are moved past the previous one,
+   * leaving those parts empty.
+   *
+   * @param sample of type long[]
+   * @param parts  of type int
+   * @return long[]
+   */
+  static long[] boundaries( long[] sample, int parts )
+    {
+    Arrays.sort( sample );
+
+    long[] boundaries = new long[ parts - 1 ];
+
+    for( int i = 0; i < boundaries.length; i++ )
+      {
+      long boundary = sample.length == 0 ? 0 : sample[ (int) ( (long) ( i + 1 ) * sample.length / parts ) ];
+
+      // the partitioner requires strictly increasing boundaries
+      if( i != 0 && boundary <= boundaries[ i - 1 ] )
+        boundary = boundaries[ i - 1 ] + 1;
+
+      boundaries[ i ] = boundary;
+      }
+
+    return boundaries;
+    }
+  }
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package loganalysis;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Class TopN merges the encoded {@link SpaceSaving} summaries of a group and emits its n most frequent values, see
+ * {@link SpaceSaving#top(int)}.
+ */
+public class TopN extends BaseOperation<SpaceSaving> implements Aggregator<SpaceSaving>
+  {
+  private final int capacity;
+  private final int n;
+
+  /**
+   * Constructor TopN creates a new TopN instance.
+   *
+   * @param fieldDeclaration of type Fields
+   * @param capacity         of type int, the number of counters the summaries were built with
+   * @param n                of type int, the number of values to emit
+   */
+  public TopN( Fields fieldDeclaration, int capacity, int n )
+    {
+    super( 1, fieldDeclaration );
+    this.capacity = capacity;
+    this.n = n;
+    }
+
+  public void start( FlowProcess flowProcess, AggregatorCall<SpaceSaving> aggregatorCall )
+    {
+    if( aggregatorCall.getContext() == null )
+      aggregatorCall.setContext( new SpaceSaving( capacity ) );
+    else
+      aggregatorCall.getContext().clear();
+    }
+
+  public void aggregate( FlowProcess flowProcess, AggregatorCall<SpaceSaving> aggregatorCall )
+    {
+    aggregatorCall.getContext().merge( aggregatorCall.getArguments().getString( 0 ) );
+    }
+
+  public void complete( FlowProcess flowProcess, AggregatorCall<SpaceSaving> aggregatorCall )
+    {
+    aggregatorCall.getOutputCollector().add( new Tuple( aggregatorCall.getContext().top( n ) ) );
+    }
+  }
@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package loganalysis;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+
+import cascading.CascadingTestCase;
+
+/**
+ * Checks that {@link ApacheTime} parses every timestamp, canonical or not, to the same time as SimpleDateFormat.
+ */
+public class ApacheTimeTest extends CascadingTestCase
+  {
+  static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+  static final String[] OFFSETS = {"+0000", "-0000", "+0100", "-0100", "+0530", "+0545", "-0930", "+1400", "-1200", "+2359", "-2359"};
+
+  // not in the canonical layout, or not a valid date, so parsed, or rejected, by SimpleDateFormat
+  static final String[] MALFORMED = {
+    "",
+    "01/Sep/2007:00:01:03",
+    "1/Sep/2007:00:01:03 +0000",
+    "01/Sep/2007:00:01:03 +000",
+    "01/Sep/2007:00:01:03 +00000",
+    "01/Sep/2007:00:01:03  +0000",
+    "01-Sep-2007:00:01:03 +0000",
+    "01/Sep/2007 00:01:03 +0000",
+    "01/Sep/2007:00.01:03 +0000",
+    "01/Sep/2007:00:01.03 +0000",
+    "01/Sep/2007:00:01:03+00000",
+    "01/Sep/2007:00:01:03 0+000",
+    "01/Sep/2007:00:01:3x +0000",
+    "01/Sep/2007:00:01:60 +0000",
+    "01/Sep/2007:00:60:03 +0000",
+    "01/Sep/2007:24:01:03 +0000",
+    "00/Sep/2007:00:01:03 +0000",
+    "31/Sep/2007:00:01:03 +0000",
+    "29/Feb/2007:00:01:03 +0000",
+    "30/Feb/2008:00:01:03 +0000",
+    "29/Feb/2100:00:01:03 +0000",
+    "01/Sep/1969:00:01:03 +0000",
+    "31/Dec/1969:23:59:59 -0100",
+    "01/Spt/2007:00:01:03 +0000",
+    "01/sep/2007:00:01:03 +0000",
+    "01/SEP/2007:00:01:03 +0000",
+    "01/Sep/2007:00:01:03 +2400",
+    "01/Sep/2007:00:01:03 +0060",
+    "01/Sep/2007:00:01:03 *0000",
+    "0x/Sep/2007:00:01:03 +0000",
+    "01/Sep/20x7:00:01:03 +0000",
+    "01/Sep/2007:00:01:03 +0000]"
+  };
+
+  public ApacheTimeTest()
+    {
+    super( "apache time" );
+    }
+
+  public void testSampleData() throws IOException
+    {
+    ApacheTime apacheTime = new ApacheTime();
+    BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( "data/apache.200.txt" ), "UTF-8" ) );
+    int count = 0;
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        {
+        assertSameTime( apacheTime, line.substring( line.indexOf( '[' ) + 1, line.indexOf( ']' ) ) );
+        count++;
+        }
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    assertEquals( 200, count );
+    }
+
+  // consecutive timestamps in the same minute only read the seconds
+  public void testCachedMinute()
+    {
+    ApacheTime apacheTime = new ApacheTime();
+
+    for( int second = 0; second < 60; second++ )
+      assertSameTime( apacheTime, String.format( "01/Sep/2007:00:01:%02d +0000", second ) );
+
+    // the same minute in another zone, the next minute, and back again
+    assertSameTime( apacheTime, "01/Sep/2007:00:01:59 +0100" );
+    assertSameTime( apacheTime, "01/Sep/2007:00:01:00 +0000" );
+    assertSameTime( apacheTime, "01/Sep/2007:00:02:00 +0000" );
+    assertSameTime( apacheTime, "01/Sep/2007:00:01:30 +0000" );
+
+    // the cached minute with malformed seconds falls back, and does not replace the cache
+    assertSameTime( apacheTime, "01/Sep/2007:00:01:6x +0000" );
+    assertSameTime( apacheTime, "01/Sep/2007:00:01:60 +0000" );
+    assertSameTime( apacheTime, "01/Sep/2007:00:01.30 +0000" );
+    assertSameTime( apacheTime, "01/Sep/2007:00:01:31 +0000" );
+    }
+
+  public void testEveryMonth()
+    {
+    ApacheTime apacheTime = new ApacheTime();
+    int[] years = {1970, 1999, 2000, 2004, 2007, 2038, 2100};
+
+    for( int year : years )
+      {
+      for( String month : MONTHS )
+        {
+        // the first day, the last days of any month, and the day after, which only SimpleDateFormat accepts
+        for( int day : new int[]{1, 15, 28, 29, 30, 31} )
+          {
+          assertSameTime( apacheTime, String.format( "%02d/%s/%d:00:00:00 +0000", day, month, year ) );
+          assertSameTime( apacheTime, String.format( "%02d/%s/%d:23:59:59 +0000", day, month, year ) );
+          }
+        }
+      }
+    }
+
+  public void testOffsets()
+    {
+    ApacheTime apacheTime = new ApacheTime();
+
+    for( String offset : OFFSETS )
+      {
+      assertSameTime( apacheTime, "01/Jan/1970:00:00:00 " + offset );
+      assertSameTime( apacheTime, "31/Dec/1999:23:59:59 " + offset );
+      assertSameTime( apacheTime, "29/Feb/2008:12:30:45 " + offset );
+      }
+    }
+
+  public void testRandomTimes()
+    {
+    ApacheTime apacheTime = new ApacheTime();
+    Random random = new Random( 0 );
+
+    for( int i = 0; i < 20000; i++ )
+      {
+      String offset = String.format( "%s%02d%02d", random.nextBoolean() ? "+" : "-", random.nextInt( 15 ), random.nextInt( 4 ) * 15 );
+      String time = String.format( "%02d/%s/%d:%02d:%02d:%02d %s", 1 + random.nextInt( 31 ), MONTHS[ random.nextInt( 12 ) ], 1970 + random.nextInt( 131 ), random.nextInt( 24 ), random.nextInt( 60 ), random.nextInt( 60 ), offset );
+
+      assertSameTime( apacheTime, time );
+
+      // usually followed by a timestamp in the same minute
+      assertSameTime( apacheTime, time.substring( 0, 18 ) + String.format( "%02d", random.nextInt( 60 ) ) + time.substring( 20 ) );
+      }
+    }
+
+  public void testMalformed()
+    {
+    ApacheTime apacheTime = new ApacheTime();
+
+    for( String time : MALFORMED )
+      {
+      assertSameTime( apacheTime, time );
+
+      // and once a valid timestamp was cached
+      assertSameTime( apacheTime, "01/Sep/2007:00:01:03 +0000" );
+      assertSameTime( apacheTime, time );
+      }
+    }
+
+  // either the same time, or both reject it
+  private static void assertSameTime( ApacheTime apacheTime, String time )
+    {
+    Long expected;
+
+    try
+      {
+      expected = new SimpleDateFormat( ApacheTime.FORMAT, Locale.US ).parse( time ).getTime();
+      }
+    catch( ParseException exception )
+      {
+      expected = null;
+      }
+
+    Long result;
+
+    try
+      {
+      result = apacheTime.parse( time );
+      }
+    catch( ParseException exception )
+      {
+      result = null;
+      }
+
+    assertEquals( "time of: [" + time + "]", expected, result );
+    }
+  }
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package loganalysis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import cascading.CascadingTestCase;
+
+/**
+ * Checks that {@link SpaceSaving} summaries, offered to directly or merged from partial summaries, track every value
+ * above 1 / capacity of the total, with a count and error bounding its true count.
+ */
+public class SpaceSavingTest extends CascadingTestCase
+  {
+  static final int CAPACITY = 100;
+
+  public SpaceSavingTest()
+    {
+    super( "space saving" );
+    }
+
+  public void testOffer()
+    {
+    List<String> values = skewed( new Random( 0 ), 100000, 5000 );
+    SpaceSaving summary = new SpaceSaving( CAPACITY );
+
+    for( String value : values )
+      summary.offer( value );
+
+    assertBounds( counts( values ), values.size(), summary );
+    }
+
+  // the partials hold mostly different values, so each drops values the others track
+  public void testMergeDisjointPartials()
+    {
+    Random random = new Random( 1 );
+    List<String> values = new ArrayList<String>();
+    SpaceSaving merged = new SpaceSaving( CAPACITY );
+
+    for( int i = 0; i < 8; i++ )
+      {
+      List<String> partial = skewed( random, 20000, 2000 );
+
+      // a few values are frequent in every partial, the rest are only seen by this one
+      for( int j = 0; j < partial.size(); j++ )
+        {
+        if( !partial.get( j ).equals( "0" ) && !partial.get( j ).equals( "1" ) )
+          partial.set( j, i + "-" + partial.get( j ) );
+        }
+
+      values.addAll( partial );
+      merged.merge( summarize( partial ).encode() );
+      }
+
+    assertBounds( counts( values ), values.size(), merged );
+    }
+
+  // partials merged pairwise, and the merged summaries merged again, each drops values the others track
+  public void testMergeOfMerged()
+    {
+    Random random = new Random( 3 );
+    List<String> values = new ArrayList<String>();
+    List<SpaceSaving> summaries = new ArrayList<SpaceSaving>();
+
+    for( int i = 0; i < 16; i++ )
+      {
+      List<String> partial = skewed( random, 5000, 3000 );
+
+      values.addAll( partial );
+      summaries.add( summarize( partial ) );
+      }
+
+    while( summaries.size() > 1 )
+      {
+      List<SpaceSaving> next = new ArrayList<SpaceSaving>();
+
+      for( int i = 0; i < summaries.size(); i += 2 )
+        {
+        SpaceSaving summary = summaries.get( i );
+
+        summary.merge( summaries.get( i + 1 ).encode() );
+        next.add( summary );
+        }
+
+      summaries = next;
+      }
+
+    assertBounds( counts( values ), values.size(), summaries.get( 0 ) );
+    }
+
+  public void testTop()
+    {
+    SpaceSaving summary = new SpaceSaving( 3 );
+
+    for( String value : new String[]{"b", "a", "c", "a", "b", "a"} )
+      summary.offer( value );
+
+    assertEquals( "a=3 b=2", summary.top( 2 ) );
+    assertEquals( "a=3 b=2 c=1", summary.top( 10 ) );
+
+    // d was not tracked, so it may have been seen once, as often as c, and is dropped on a tie with b
+    summary.merge( "2,0,1:c1,0,1:d" );
+
+    assertEquals( "a=3 c=3 b=2", summary.top( 3 ) );
+    }
+
+  private static void assertBounds( Map<String, Long> counts, long total, SpaceSaving summary )
+    {
+    Map<String, long[]> tracked = decode( summary.encode() );
+
+    assertTrue( "at most capacity counters", tracked.size() <= CAPACITY );
+
+    for( Map.Entry<String, Long> entry : counts.entrySet() )
+      {
+      String value = entry.getKey();
+      long count = entry.getValue();
+      long[] counter = tracked.get( value );
+
+      if( count * CAPACITY > total )
+        assertNotNull( "frequent value not tracked: " + value + ", seen: " + count + " of: " + total, counter );
+
+      if( counter == null )
+        continue;
+
+      assertTrue( "count of: " + value + " below " + count + ": " + counter[ 0 ], counter[ 0 ] >= count );
+      assertTrue( "error of: " + value + " too small for " + count + ": " + counter[ 0 ] + "," + counter[ 1 ], counter[ 0 ] - counter[ 1 ] <= count );
+      }
+    }
+
+  private static SpaceSaving summarize( List<String> values )
+    {
+    SpaceSaving summary = new SpaceSaving( CAPACITY );
+
+    for( String value : values )
+      summary.offer( value );
+
+    return summary;
+    }
+
+  // values 0 to distinct - 1, the smaller ones far more frequent
+  private static List<String> skewed( Random random, int size, int distinct )
+    {
+    List<String> values = new ArrayList<String>( size );
+
+    for( int i = 0; i < size; i++ )
+      values.add( Integer.toString( (int) ( distinct * Math.pow( random.nextDouble(), 4 ) ) ) );
+
+    return values;
+    }
+
+  private static Map<String, Long> counts( List<String> values )
+    {
+    Map<String, Long> counts = new HashMap<String, Long>();
+
+    for( String value : values )
+      {
+      Long count = counts.get( value );
+      counts.put( value, count == null ? 1 : count + 1 );
+      }
+
+    return counts;
+    }
+
+  // value -> {count, error}, see SpaceSaving#encode()
+  private static Map<String, long[]> decode( String encoded )
+    {
+    Map<String, long[]> decoded = new HashMap<String, long[]>();
+    int pos = 0;
+
+    while( pos < encoded.length() )
+      {
+      int comma = encoded.indexOf( ',', pos );
+      int next = encoded.indexOf( ',', comma + 1 );
+      int colon = encoded.indexOf( ':', next + 1 );
+      int length = Integer.parseInt( encoded.substring( next + 1, colon ) );
+      long[] counter = {Long.parseLong( encoded.substring( pos, comma ) ), Long.parseLong( encoded.substring( comma + 1, next ) )};
+
+      decoded.put( encoded.substring( colon + 1, colon + 1 + length ), counter );
+
+      pos = colon + 1 + length;
+      }
+
+    return decoded;
+    }
+  }
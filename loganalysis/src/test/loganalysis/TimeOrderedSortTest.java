@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package loganalysis;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import cascading.CascadingTestCase;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+
+/**
+ * Checks the partition boundaries {@link TimeOrderedSort} samples and picks.
+ */
+public class TimeOrderedSortTest extends CascadingTestCase
+  {
+  public TimeOrderedSortTest()
+    {
+    super( "time ordered sort tests" );
+    }
+
+  public void testBoundaries()
+    {
+    long[] sample = new long[ 100 ];
+
+    for( int i = 0; i < sample.length; i++ )
+      sample[ i ] = 1000 + i;
+
+    assertEquals( "[1025, 1050, 1075]", Arrays.toString( TimeOrderedSort.boundaries( sample, 4 ) ) );
+    assertEquals( "[]", Arrays.toString( TimeOrderedSort.boundaries( sample, 1 ) ) );
+    }
+
+  public void testFewDistinctTimes()
+    {
+    assertEquals( "[7, 8, 9]", Arrays.toString( TimeOrderedSort.boundaries( new long[]{7, 7, 7, 7, 7}, 4 ) ) );
+    assertEquals( "[1, 2]", Arrays.toString( TimeOrderedSort.boundaries( new long[]{2, 1, 1, 1}, 3 ) ) );
+    assertEquals( "[0, 1]", Arrays.toString( TimeOrderedSort.boundaries( new long[ 0 ], 3 ) ) );
+    }
+
+  // with distinct times, boundary i has (i + 1) / parts of the sample before it, and the boundaries always increase
+  public void testRandomSamples()
+    {
+    Random random = new Random( 0 );
+
+    for( int run = 0; run < 1000; run++ )
+      {
+      int parts = 1 + random.nextInt( 16 );
+      long[] sample = new long[ random.nextInt( 500 ) ];
+      boolean distinct = run % 2 == 0;
+
+      for( int i = 0; i < sample.length; i++ )
+        sample[ i ] = distinct ? i * 3 + random.nextInt( 3 ) : random.nextInt( 20 );
+
+      shuffle( sample, random );
+
+      long[] boundaries = TimeOrderedSort.boundaries( sample.clone(), parts );
+
+      assertEquals( "boundaries", parts - 1, boundaries.length );
+
+      for( int i = 1; i < boundaries.length; i++ )
+        assertTrue( "increasing: " + Arrays.toString( boundaries ), boundaries[ i - 1 ] < boundaries[ i ] );
+
+      // boundaries only move past repeated ones with fewer times than parts
+      if( !distinct || sample.length < parts )
+        continue;
+
+      for( int i = 0; i < boundaries.length; i++ )
+        assertEquals( "before boundary " + i, ( i + 1 ) * sample.length / parts, countBefore( sample, boundaries[ i ] ) );
+      }
+    }
+
+  // a step of one byte reads every line, longer ones the line starting at or after every step, each at most once
+  public void testSample() throws IOException
+    {
+    File file = File.createTempFile( "times", ".txt" );
+
+    try
+      {
+      int lines = 5000;
+      Writer writer = new OutputStreamWriter( new FileOutputStream( file ), "UTF-8" );
+
+      try
+        {
+        for( int i = 0; i < lines; i++ )
+          writer.write( ( 1000000 + i ) + "\t" + ( i % 7 ) + ( i % 3 == 0 ? "\r\n" : "\n" ) );
+        }
+      finally
+        {
+        writer.close();
+        }
+
+      assertSample( file, 1, lines, lines );
+      // one line per offset, the last offset may fall in the last line
+      int offsets = (int) ( ( file.length() + 99 ) / 100 );
+
+      assertSample( file, 100, offsets - 1, offsets );
+      assertSample( file, file.length() / 2, 2, 2 );
+      assertSample( file, file.length(), 1, 1 );
+      }
+    finally
+      {
+      file.delete();
+      }
+    }
+
+  private static void assertSample( File file, long step, int minimum, int maximum ) throws IOException
+    {
+    FileSystem fileSystem = FileSystem.getLocal( new JobConf() );
+    FSDataInputStream input = fileSystem.open( new Path( file.getAbsolutePath() ) );
+    long[] sample = new long[ 10000 ];
+    int size;
+
+    try
+      {
+      size = TimeOrderedSort.PartitionsListener.sample( input, file.length(), step, sample, 0 );
+      }
+    finally
+      {
+      input.close();
+      }
+
+    assertTrue( "step " + step + ", sampled " + size, minimum <= size && size <= maximum );
+
+    Set<Long> times = new HashSet<Long>();
+
+    for( int i = 0; i < size; i++ )
+      {
+      assertTrue( "time " + sample[ i ], 1000000 <= sample[ i ] && sample[ i ] < 1005000 );
+      assertTrue( "sampled twice: " + sample[ i ], times.add( sample[ i ] ) );
+      }
+
+    assertEquals( "first line", 1000000, sample[ 0 ] );
+    }
+
+  private static int countBefore( long[] sample, long boundary )
+    {
+    int count = 0;
+
+    for( long time : sample )
+      {
+      if( time < boundary )
+        count++;
+      }
+
+    return count;
+    }
+
+  private static void shuffle( long[] values, Random random )
+    {
+    for( int i = values.length - 1; i > 0; i-- )
+      {
+      int j = random.nextInt( i + 1 );
+      long value = values[ i ];
+      values[ i ] = values[ j ];
+      values[ j ] = value;
+      }
+    }
+  }
@@ -32,6 +32,7 @@ import cascading.tap.Lfs;
 import cascading.tap.SinkMode;
 import cascading.tap.Tap;
 import cascading.tuple.Fields;
+import common.MappedTextLine;
 
 import java.util.Properties;
 
@@ -45,11 +46,33 @@ public class Main
     String inputPath = args[ 0 ];
     String outputPath = args[ 1 ];
 
+    // set the current job jar
+    Properties properties = new Properties();
+    FlowConnector.setApplicationJarClass( properties, Main.class );
+
+    Flow parsedLogFlow = createFlow( new FlowConnector( properties ), inputPath, outputPath );
+
+    // optionally print out the parsedLogFlow to a DOT file for import into a graphics package
+    // parsedLogFlow.writeDOT( "logparser.dot" );
+
+    // start execution of the flow (either locally or on the cluster
+    parsedLogFlow.start();
+
+    // block until the flow completes
+    parsedLogFlow.complete();
+    }
+
+  /**
+   * Method createFlow creates the flow parsing the log at inputPath into tab separated fields under outputPath.
+   */
+  public static Flow createFlow( FlowConnector flowConnector, String inputPath, String outputPath )
+    {
     // define what the input file looks like, "offset" is bytes from beginning
-    TextLine scheme = new TextLine( new Fields( "offset", "line" ) );
+    Fields lineFields = new Fields( "offset", "line" );
 
     // create SOURCE tap to read a resource from the local file system, if input is not an URL
-    Tap logTap = inputPath.matches( "^[^:]+://.*" ) ? new Hfs( scheme, inputPath ) : new Lfs( scheme, inputPath );
+    // local files are memory mapped instead of streamed
+    Tap logTap = inputPath.matches( "^[^:]+://.*" ) ? new Hfs( new TextLine( lineFields ), inputPath ) : new Lfs( new MappedTextLine( lineFields ), inputPath );
 
     // create an assembly to parse an Apache log file and store on an HDFS cluster
 
@@ -75,20 +98,7 @@ public class Main
     // by default, TextLine writes all fields out
     Tap remoteLogTap = new Hfs( new TextLine(), outputPath, SinkMode.REPLACE );
 
-    // set the current job jar
-    Properties properties = new Properties();
-    FlowConnector.setApplicationJarClass( properties, Main.class );
-
     // connect the assembly to the SOURCE and SINK taps
-    Flow parsedLogFlow = new FlowConnector( properties ).connect( logTap, remoteLogTap, importPipe );
-
-    // optionally print out the parsedLogFlow to a DOT file for import into a graphics package
-    // parsedLogFlow.writeDOT( "logparser.dot" );
-
-    // start execution of the flow (either locally or on the cluster
-    parsedLogFlow.start();
-
-    // block until the flow completes
-    parsedLogFlow.complete();
+    return flowConnector.connect( logTap, remoteLogTap, importPipe );
     }
   }
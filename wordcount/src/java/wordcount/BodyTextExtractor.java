@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.operation.OperationException;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import org.ccil.cowan.tagsoup.HTMLSchema;
+import org.ccil.cowan.tagsoup.Parser;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Class BodyTextExtractor streams an html page through the TagSoup SAX parser and emits the text of its body, skipping
+ * the text directly inside 'script' elements, without building a DOM.
+ * <p/>
+ * It replaces a {@link cascading.operation.xml.TagSoupParser} followed by an XPath for "//xhtml:body" and another for
+ * "//text()[ name(parent::node()) != 'script']". Instead of one tuple per text node, the text nodes are joined with a
+ * single space, so splitting the result on letter boundaries yields the same words. Nothing is emitted for a page
+ * without body text.
+ */
+public class BodyTextExtractor extends BaseOperation<BodyTextExtractor.Context> implements Function<BodyTextExtractor.Context>
+  {
+  public static class Context extends DefaultHandler
+    {
+    final Parser parser = new Parser();
+    final StringBuilder text = new StringBuilder();
+
+    int bodyDepth;
+    boolean inScript;
+
+    Context() throws SAXException
+      {
+      parser.setProperty( Parser.schemaProperty, new HTMLSchema() );
+      parser.setContentHandler( this );
+      }
+
+    void reset()
+      {
+      text.setLength( 0 );
+      bodyDepth = 0;
+      inScript = false;
+      }
+
+    @Override
+    public void startElement( String uri, String localName, String qName, Attributes attributes )
+      {
+      String name = localName.length() != 0 ? localName : qName;
+
+      if( bodyDepth != 0 || name.equals( "body" ) )
+        bodyDepth++;
+
+      inScript = name.equals( "script" );
+      separate();
+      }
+
+    @Override
+    public void endElement( String uri, String localName, String qName )
+      {
+      if( bodyDepth != 0 )
+        bodyDepth--;
+
+      // text following a closing tag belongs to the parent, which cannot be a script element
+      inScript = false;
+      separate();
+      }
+
+    @Override
+    public void characters( char[] chars, int start, int length )
+      {
+      if( bodyDepth != 0 && !inScript )
+        text.append( chars, start, length );
+      }
+
+    // element boundaries end a text node
+    private void separate()
+      {
+      if( text.length() != 0 && text.charAt( text.length() - 1 ) != ' ' )
+        text.append( ' ' );
+      }
+    }
+
+  public BodyTextExtractor( Fields fieldDeclaration )
+    {
+    super( 1, fieldDeclaration );
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    try
+      {
+      operationCall.setContext( new Context() );
+      }
+    catch( SAXException exception )
+      {
+      throw new OperationException( "unable to create the tagsoup parser", exception );
+      }
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    Context context = functionCall.getContext();
+    String page = functionCall.getArguments().getString( 0 );
+
+    if( page == null )
+      return;
+
+    context.reset();
+
+    try
+      {
+      context.parser.parse( new InputSource( new StringReader( page ) ) );
+      }
+    catch( IOException exception )
+      {
+      throw new OperationException( "unable to read page", exception );
+      }
+    catch( SAXException exception )
+      {
+      throw new OperationException( "unable to parse page", exception );
+      }
+
+    if( context.text.length() != 0 )
+      functionCall.getOutputCollector().add( new Tuple( context.text.toString() ) );
+    }
+  }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package wordcount;
+
+import java.io.IOException;
+
+import cascading.scheme.SequenceFile;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import common.Codecs;
+import org.apache.hadoop.mapred.JobConf;
+
+/**
+ * Class CompressedSequenceFile is a {@link SequenceFile} scheme that writes block compressed files.
+ * <p/>
+ * The codec is either given to the constructor, or read from the "samples.sequencefile.codec" property, see
+ * {@link Codecs} for the codec names. Compressed files are read back like any other sequence file.
+ */
+public class CompressedSequenceFile extends SequenceFile
+  {
+  private final String codec;
+
+  public CompressedSequenceFile( Fields fields )
+    {
+    this( fields, null );
+    }
+
+  /**
+   * Constructor CompressedSequenceFile creates a new CompressedSequenceFile instance.
+   *
+   * @param fields of type Fields
+   * @param codec  of type String, the codec name, or null to use the "samples.sequencefile.codec" property
+   */
+  public CompressedSequenceFile( Fields fields, String codec )
+    {
+    super( fields );
+    this.codec = codec;
+
+    if( codec != null )
+      Codecs.getWritableCodecClass( codec ); // fail early on unknown codecs
+    }
+
+  @Override
+  public void sinkInit( Tap tap, JobConf conf ) throws IOException
+    {
+    super.sinkInit( tap, conf );
+
+    Codecs.setOutputCompression( conf, codec );
+    }
+  }
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class HotKeySalter adds a salt between its key and value arguments, so grouping on the key and the salt spreads
+ * the tuples of a hot key over several reducers.
+ * <p/>
+ * The first sampleSize keys are counted, keys making up more than hotFraction of them are hot from then on, and
+ * their tuples take turns over the salts 0 to salts - 1. Every other tuple, and every tuple seen while sampling,
+ * gets the salt 0. The salt only decides where a tuple is grouped, so summing over the salts gives the same totals
+ * whatever the sample saw.
+ */
+public class HotKeySalter extends BaseOperation<HotKeySalter.Context> implements Function<HotKeySalter.Context>
+  {
+  private final int salts;
+  private final int sampleSize;
+  private final double hotFraction;
+
+  public static class Context
+    {
+    Map<Comparable, int[]> sample = new HashMap<Comparable, int[]>();
+    Set<Comparable> hot;
+    int sampled;
+    int nextSalt;
+    }
+
+  /**
+   * Constructor HotKeySalter creates a new HotKeySalter instance.
+   *
+   * @param fieldDeclaration of type Fields, declares the key, the salt and the value
+   * @param salts            of type int, the number of salts a hot key is spread over
+   * @param sampleSize       of type int, the number of keys sampled
+   * @param hotFraction      of type double, the fraction of the sample above which a key is hot
+   */
+  public HotKeySalter( Fields fieldDeclaration, int salts, int sampleSize, double hotFraction )
+    {
+    super( 2, fieldDeclaration );
+
+    if( fieldDeclaration.size() != 3 )
+      throw new IllegalArgumentException( "fieldDeclaration must declare three fields, was: " + fieldDeclaration.print() );
+
+    if( salts < 1 )
+      throw new IllegalArgumentException( "salts must be positive, was: " + salts );
+
+    this.salts = salts;
+    this.sampleSize = sampleSize;
+    this.hotFraction = hotFraction;
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    // the salt of a key depends on the keys seen before it
+    return false;
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    operationCall.setContext( new Context() );
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    Context context = functionCall.getContext();
+    TupleEntry arguments = functionCall.getArguments();
+    Comparable key = arguments.get( 0 );
+    int salt = 0;
+
+    if( context.hot == null )
+      sample( context, key );
+    else if( context.hot.contains( key ) )
+      salt = context.nextSalt = ( context.nextSalt + 1 ) % salts;
+
+    functionCall.getOutputCollector().add( new Tuple( key, salt, arguments.get( 1 ) ) );
+    }
+
+  private void sample( Context context, Comparable key )
+    {
+    int[] count = context.sample.get( key );
+
+    if( count == null )
+      context.sample.put( key, new int[]{1} );
+    else
+      count[ 0 ]++;
+
+    if( ++context.sampled < sampleSize )
+      return;
+
+    context.hot = new HashSet<Comparable>();
+
+    for( Map.Entry<Comparable, int[]> entry : context.sample.entrySet() )
+      {
+      if( entry.getValue()[ 0 ] > hotFraction * sampleSize )
+        context.hot.add( entry.getKey() );
+      }
+
+    context.sample = null;
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    operationCall.setContext( null );
+    }
+  }
@@ -21,6 +21,13 @@
 
 package wordcount;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -30,25 +37,29 @@ import cascading.cascade.Cascades;
 import cascading.flow.Flow;
 import cascading.flow.FlowConnector;
 import cascading.operation.Identity;
-import cascading.operation.aggregator.Count;
+import cascading.operation.aggregator.Sum;
 import cascading.operation.regex.RegexFilter;
-import cascading.operation.regex.RegexGenerator;
 import cascading.operation.regex.RegexReplace;
 import cascading.operation.regex.RegexSplitter;
-import cascading.operation.xml.TagSoupParser;
-import cascading.operation.xml.XPathGenerator;
-import cascading.operation.xml.XPathOperation;
 import cascading.pipe.Each;
 import cascading.pipe.Every;
 import cascading.pipe.GroupBy;
 import cascading.pipe.Pipe;
 import cascading.pipe.SubAssembly;
-import cascading.scheme.SequenceFile;
 import cascading.scheme.TextLine;
 import cascading.tap.Hfs;
 import cascading.tap.Lfs;
 import cascading.tap.Tap;
 import cascading.tuple.Fields;
+import common.Codecs;
+import common.Meter;
+import common.MeteredFilter;
+import common.MeteredFunction;
+import common.ParallelMapRunner;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
 
 /**
  *
@@ -62,13 +73,13 @@ public class Main
       {
       // split the text line into "url" and "raw" with the default delimiter of tab
       RegexSplitter regexSplitter = new RegexSplitter( new Fields( "url", "raw" ) );
-      Pipe importPipe = new Each( name, new Fields( "line" ), regexSplitter );
+      Pipe importPipe = new Each( name, new Fields( "line" ), MeteredFunction.meter( regexSplitter ) );
       // remove all pdf documents from the stream
-      importPipe = new Each( importPipe, new Fields( "url" ), new RegexFilter( ".*\\.pdf$", true ) );
+      importPipe = new Each( importPipe, new Fields( "url" ), MeteredFilter.meter( new RegexFilter( ".*\\.pdf$", true ) ) );
       // replace ":nl" with a new line, return the fields "url" and "page" to the stream.
       // discared the other fields in the stream
       RegexReplace regexReplace = new RegexReplace( new Fields( "page" ), ":nl:", "\n" );
-      importPipe = new Each( importPipe, new Fields( "raw" ), regexReplace, new Fields( "url", "page" ) );
+      importPipe = new Each( importPipe, new Fields( "raw" ), MeteredFunction.meter( regexReplace ), new Fields( "url", "page" ) );
 
       setTails( importPipe );
       }
@@ -76,51 +87,138 @@ public class Main
 
   private static class WordCountSplitAssembly extends SubAssembly
     {
-    public WordCountSplitAssembly( String sourceName, String sinkUrlName, String sinkWordName )
+    public WordCountSplitAssembly( String sourceName, String sinkUrlName, String sinkWordName, int salts, int topK, boolean trim )
       {
       // create a new pipe assembly to create the word count across all the pages, and the word count in a single page
       Pipe pipe = new Pipe( sourceName );
 
-      // convert the html to xhtml using the TagSouParser. return only the fields "url" and "xml", discard the rest
-      pipe = new Each( pipe, new Fields( "page" ), new TagSoupParser( new Fields( "xml" ) ), new Fields( "url", "xml" ) );
-      // apply the given XPath expression to the xml in the "xml" field. this expression extracts the 'body' element.
-      XPathGenerator bodyExtractor = new XPathGenerator( new Fields( "body" ), XPathOperation.NAMESPACE_XHTML, "//xhtml:body" );
-      pipe = new Each( pipe, new Fields( "xml" ), bodyExtractor, new Fields( "url", "body" ) );
-      // apply another XPath expression. this expression removes all elements from the xml, leaving only text nodes.
-      // text nodes in a 'script' element are removed.
-      String elementXPath = "//text()[ name(parent::node()) != 'script']";
-      XPathGenerator elementRemover = new XPathGenerator( new Fields( "words" ), XPathOperation.NAMESPACE_XHTML, elementXPath );
-      pipe = new Each( pipe, new Fields( "body" ), elementRemover, new Fields( "url", "words" ) );
-      // apply the regex to break the document into individual words and stuff each word at a new tuple into the current
-      // stream with field names "url" and "word"
-      RegexGenerator wordGenerator = new RegexGenerator( new Fields( "word" ), "(?<!\\pL)(?=\\pL)[^ ]*(?<=\\pL)(?!\\pL)" );
-      pipe = new Each( pipe, new Fields( "words" ), wordGenerator, new Fields( "url", "word" ) );
-
-      // group on "url"
-      Pipe urlCountPipe = new GroupBy( sinkUrlName, pipe, new Fields( "url", "word" ) );
-      urlCountPipe = new Every( urlCountPipe, new Fields( "url", "word" ), new Count(), new Fields( "url", "word", "count" ) );
-
-      // group on "word"
-      Pipe wordCountPipe = new GroupBy( sinkWordName, pipe, new Fields( "word" ) );
-      wordCountPipe = new Every( wordCountPipe, new Fields( "word" ), new Count(), new Fields( "word", "count" ) );
+      // stream the html through the TagSoup parser, keeping only the text in the 'body' element. text in a 'script'
+      // element is removed. return only the fields "url" and "words", discard the rest
+      pipe = new Each( pipe, new Fields( "page" ), new MeteredFunction<BodyTextExtractor.Context>( new BodyTextExtractor( new Fields( "words" ) ) ), new Fields( "url", "words" ) );
+      // tokenize the text into individual words and count them per page, stuffing each distinct
+      // word of a page as a new tuple into the current stream with field names "url", "word" and "count"
+      PageWordCounter wordCounter = new PageWordCounter( new Fields( "url", "word", "count" ) );
+      pipe = new Each( pipe, new Fields( "url", "words" ), new MeteredFunction<PageWordCounter.Context>( wordCounter ), Fields.RESULTS );
+
+      Pipe urlCountPipe;
+
+      if( topK > 0 )
+        {
+        urlCountPipe = pipe;
+
+        // optionally keep only the top words of each page before grouping, see TopWordsTrimmer
+        if( trim )
+          urlCountPipe = new Each( urlCountPipe, new Fields( "url", "word", "count" ), new MeteredFunction<TopWordsTrimmer.Context>( new TopWordsTrimmer( new Fields( "url", "word", "count" ), topK ) ), Fields.RESULTS );
+
+        // group on "url", sorted on "word", summing the per page counts and keeping only the top words of each url
+        urlCountPipe = new GroupBy( sinkUrlName, urlCountPipe, new Fields( "url" ), new Fields( "word" ) );
+        urlCountPipe = new Every( urlCountPipe, new Fields( "word", "count" ), new TopWordsAggregator( new Fields( "word", "count" ), topK ), new Fields( "url", "word", "count" ) );
+        }
+      else
+        {
+        // group on "url", summing the per page counts
+        urlCountPipe = new GroupBy( sinkUrlName, pipe, new Fields( "url", "word" ) );
+        urlCountPipe = new Every( urlCountPipe, new Fields( "count" ), new Sum( new Fields( "count" ), long.class ), new Fields( "url", "word", "count" ) );
+        }
+
+      // group on "word", summing the per page counts
+      Pipe wordCountPipe;
+
+      if( salts > 1 )
+        {
+        // spread the most frequent words over several reducers, then sum their partial counts
+        wordCountPipe = new SaltedSumBy( sinkWordName, pipe, new Fields( "word" ), new Fields( "count" ), salts ).getTails()[ 0 ];
+        }
+      else
+        {
+        wordCountPipe = new GroupBy( sinkWordName, pipe, new Fields( "word" ) );
+        wordCountPipe = new Every( wordCountPipe, new Fields( "count" ), new Sum( new Fields( "count" ), long.class ), new Fields( "word", "count" ) );
+        }
 
       setTails( urlCountPipe, wordCountPipe );
       }
     }
 
-  public static void main( String[] args )
+  public static void main( String[] args ) throws IOException
     {
+    String inputPath = args[ 0 ];
+    String outputPath = args[ 1 ];
+    String localPath = args[ 2 ];
+
+    List<String> options = Arrays.asList( args ).subList( 3, args.length );
+
     // set the current job jar
     Properties properties = new Properties();
     FlowConnector.setApplicationJarClass( properties, Main.class );
-    FlowConnector flowConnector = new FlowConnector( properties );
 
-    String inputPath = args[ 0 ];
-    String pagesPath = args[ 1 ] + "/pages/";
-    String urlsPath = args[ 1 ] + "/urls/";
-    String wordsPath = args[ 1 ] + "/words/";
-    String localUrlsPath = args[ 2 ] + "/urls/";
-    String localWordsPath = args[ 2 ] + "/words/";
+    // --codec compresses the pages, urls and words, "default" unless given, --map-codec compresses the map output
+    // --benchmark-codecs runs the cascade once per codec, under output/<codec> and local/<codec>
+    // --salts spreads each frequent word over that many reducers, see SaltedSumBy
+    // --top-k keeps only the k most frequent words of each url, --top-k-trim also trims them per page, see TopWordsTrimmer
+    Codecs.setCodec( properties, option( options, "--codec", Codecs.DEFAULT ) );
+
+    if( options.contains( "--map-codec" ) )
+      Codecs.setMapOutputCodec( properties, option( options, "--map-codec", null ) );
+
+    // --parallel runs every job in this JVM, each map task on that many threads, see ParallelMapRunner
+    if( options.contains( "--parallel" ) )
+      ParallelMapRunner.setLocalParallelism( properties, Integer.parseInt( option( options, "--parallel", null ) ) );
+
+    if( options.contains( "--benchmark-codecs" ) )
+      {
+      benchmarkCodecs( properties, inputPath, outputPath, localPath );
+      return;
+      }
+
+    int salts = Integer.parseInt( option( options, "--salts", "1" ) );
+    int topK = Integer.parseInt( option( options, "--top-k", "0" ) );
+    boolean trim = options.contains( "--top-k-trim" );
+
+    if( trim && topK < 1 )
+      throw new IllegalArgumentException( "--top-k-trim requires --top-k" );
+
+    Flow[] flows = createFlows( new FlowConnector( properties ), inputPath, outputPath, localPath, salts, topK, trim );
+
+    // connect up all the flows, order is not significant
+    Cascade cascade = new CascadeConnector().connect( flows );
+
+    // run the cascade to completion
+    cascade.complete();
+
+    // the tuples and sampled time per tuple of every metered operation, also found in the job counters
+    Meter.printSummary( System.out, flows );
+    }
+
+  /**
+   * Method createFlows creates the import, count and export flows, the pages, urls and words in between are stored
+   * on DFS as block compressed sequence files.
+   */
+  public static Flow[] createFlows( FlowConnector flowConnector, String inputPath, String outputPath, String localPath )
+    {
+    return createFlows( flowConnector, inputPath, outputPath, localPath, 1 );
+    }
+
+  /**
+   * Method createFlows creates the import, count and export flows, spreading each frequent word over the given
+   * number of salts when counting, see {@link SaltedSumBy}.
+   */
+  public static Flow[] createFlows( FlowConnector flowConnector, String inputPath, String outputPath, String localPath, int salts )
+    {
+    return createFlows( flowConnector, inputPath, outputPath, localPath, salts, 0, false );
+    }
+
+  /**
+   * Method createFlows creates the import, count and export flows, keeping only the topK most frequent words of each
+   * url in the url counts when topK is positive, see {@link TopWordsAggregator}. If trim, the words of each page are
+   * trimmed to the topK before grouping, see {@link TopWordsTrimmer}.
+   */
+  public static Flow[] createFlows( FlowConnector flowConnector, String inputPath, String outputPath, String localPath, int salts, int topK, boolean trim )
+    {
+    String pagesPath = outputPath + "/pages/";
+    String urlsPath = outputPath + "/urls/";
+    String wordsPath = outputPath + "/words/";
+    String localUrlsPath = localPath + "/urls/";
+    String localWordsPath = localPath + "/words/";
 
     // import a text file with crawled pages from the local filesystem into a Hadoop distributed filesystem
     // the imported file will be a native Hadoop sequence file with the fields "page" and "url"
@@ -132,18 +230,18 @@ public class Main
 
     // create the tap instances
     Tap localPagesSource = new Lfs( new TextLine(), inputPath );
-    Tap importedPages = new Hfs( new SequenceFile( new Fields( "url", "page" ) ), pagesPath );
+    Tap importedPages = new Hfs( new CompressedSequenceFile( new Fields( "url", "page" ) ), pagesPath );
 
     // connect the pipe assembly to the tap instances
     Flow importPagesFlow = flowConnector.connect( "import pages", localPagesSource, importedPages, importPipe );
 
     // a predefined pipe assembly that splits the stream into two named "url pipe" and "word pipe"
     // these pipes could be retrieved via the getTails() method and added to new pipe instances
-    SubAssembly wordCountPipe = new WordCountSplitAssembly( "wordcount pipe", "url pipe", "word pipe" );
+    SubAssembly wordCountPipe = new WordCountSplitAssembly( "wordcount pipe", "url pipe", "word pipe", salts, topK, trim );
 
-    // create Hadoop sequence files to store the results of the counts
-    Tap sinkUrl = new Hfs( new SequenceFile( new Fields( "url", "word", "count" ) ), urlsPath );
-    Tap sinkWord = new Hfs( new SequenceFile( new Fields( "word", "count" ) ), wordsPath );
+    // create block compressed Hadoop sequence files to store the results of the counts
+    Tap sinkUrl = new Hfs( new CompressedSequenceFile( new Fields( "url", "word", "count" ) ), urlsPath );
+    Tap sinkWord = new Hfs( new CompressedSequenceFile( new Fields( "word", "count" ) ), wordsPath );
 
     // convenience method to bind multiple pipes and taps
     Map<String, Tap> sinks = Cascades.tapsMap( new String[]{"url pipe", "word pipe"}, Tap.taps( sinkUrl, sinkWord ) );
@@ -161,10 +259,116 @@ public class Main
     Flow exportFromUrl = flowConnector.connect( "export url", sinkUrl, localSinkUrl, exportPipe );
     Flow exportFromWord = flowConnector.connect( "export word", sinkWord, localSinkWord, exportPipe );
 
-    // connect up all the flows, order is not significant
-    Cascade cascade = new CascadeConnector().connect( importPagesFlow, count, exportFromUrl, exportFromWord );
+    return new Flow[]{importPagesFlow, count, exportFromUrl, exportFromWord};
+    }
 
-    // run the cascade to completion
-    cascade.complete();
+  /**
+   * Method benchmarkCodecs runs the cascade once per codec, compressing both the sequence files and the map output,
+   * prints the wall time, the DFS bytes written, and the HDFS bytes the jobs read, and fails if the exported counts
+   * differ.
+   */
+  static void benchmarkCodecs( Properties properties, String inputPath, String outputPath, String localPath ) throws IOException
+    {
+    String[] codecs = Codecs.getAvailableCodecs();
+
+    if( !Arrays.asList( codecs ).contains( Codecs.GZIP ) )
+      System.out.println( "skipping gzip, it needs the native hadoop library" );
+
+    System.out.println( "codec\twall ms\tdfs bytes written\thdfs bytes read" );
+
+    for( String codec : codecs )
+      {
+      Properties codecProperties = new Properties();
+      codecProperties.putAll( properties );
+      Codecs.setCodec( codecProperties, codec );
+      Codecs.setMapOutputCodec( codecProperties, codec );
+
+      String codecPath = outputPath + "/" + codec;
+      long startTime = System.currentTimeMillis();
+
+      Flow[] flows = createFlows( new FlowConnector( codecProperties ), inputPath, codecPath, localPath + "/" + codec );
+
+      new CascadeConnector().connect( flows ).complete();
+
+      long time = System.currentTimeMillis() - startTime;
+
+      // the pages are read back by the count, the urls and words by the exports, the input is read from the local fs
+      System.out.println( codec + "\t" + time + "\t" + bytes( codecPath ) + "\t" + hdfsBytesRead( flows ) );
+      }
+
+    for( String path : new String[]{"/urls", "/words"} )
+      {
+      List<String> expected = readLines( localPath + "/" + codecs[ 0 ] + path );
+
+      for( int i = 1; i < codecs.length; i++ )
+        {
+        if( !expected.equals( readLines( localPath + "/" + codecs[ i ] + path ) ) )
+          throw new IllegalStateException( codecs[ i ] + " results differ from " + codecs[ 0 ] + " results in: " + path );
+        }
+      }
+    }
+
+  // the value following the given option, or the default value if the option is absent
+  static String option( List<String> options, String name, String defaultValue )
+    {
+    int index = options.indexOf( name );
+
+    if( index == -1 )
+      return defaultValue;
+
+    if( index == options.size() - 1 )
+      throw new IllegalArgumentException( "missing value for: " + name );
+
+    return options.get( index + 1 );
+    }
+
+  // only counted for HDFS, zero if the default file system is the local one
+  private static long hdfsBytesRead( Flow[] flows )
+    {
+    long bytes = 0;
+
+    for( Flow flow : flows )
+      bytes += flow.getFlowStats().getCounterValue( "FileSystemCounters", "HDFS_BYTES_READ" );
+
+    return bytes;
+    }
+
+  private static long bytes( String path ) throws IOException
+    {
+    Path dfsPath = new Path( path );
+
+    return dfsPath.getFileSystem( new JobConf() ).getContentSummary( dfsPath ).getLength();
+    }
+
+  // every line of every part file, sorted, since part files do not share a global order
+  private static List<String> readLines( String path ) throws IOException
+    {
+    Path dfsPath = new Path( path );
+    FileSystem fileSystem = FileSystem.getLocal( new JobConf() );
+    List<String> lines = new ArrayList<String>();
+
+    for( FileStatus status : fileSystem.listStatus( dfsPath ) )
+      {
+      if( status.isDir() || !status.getPath().getName().startsWith( "part-" ) )
+        continue;
+
+      BufferedReader reader = new BufferedReader( new InputStreamReader( fileSystem.open( status.getPath() ), "UTF-8" ) );
+
+      try
+        {
+        String line;
+
+        while( ( line = reader.readLine() ) != null )
+          lines.add( line );
+        }
+      finally
+        {
+        reader.close();
+        }
+      }
+
+    Collections.sort( lines );
+
+    return lines;
     }
   }
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import java.text.Normalizer;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Class PageWordCounter splits the text in its second argument into words and counts them per page, emitting every
+ * distinct word of a page once, with the url in its first argument and the number of times the word occurs.
+ * <p/>
+ * The text of a page may arrive in several consecutive tuples, e.g. one per text node, so the counts of a page are
+ * only emitted once the url changes, or on cleanup for the last page.
+ * <p/>
+ * Words are found with a {@link WordTokenizer}. The emitted tuple is re-used, so downstream operations must copy it
+ * if they need to hold on to it.
+ */
+public class PageWordCounter extends BaseOperation<PageWordCounter.Context> implements Function<PageWordCounter.Context>
+  {
+  private final boolean lowercase;
+  private final Normalizer.Form form;
+
+  public static class Context
+    {
+    final WordCounts counts = new WordCounts();
+    final Tuple result = Tuple.size( 3 );
+    WordTokenizer tokenizer;
+    Comparable url;
+    TupleEntryCollector outputCollector;
+    }
+
+  /**
+   * Constructor PageWordCounter creates a new PageWordCounter instance.
+   *
+   * @param fieldDeclaration of type Fields, declares the url, the word and the count
+   */
+  public PageWordCounter( Fields fieldDeclaration )
+    {
+    this( fieldDeclaration, false, null );
+    }
+
+  /**
+   * Constructor PageWordCounter creates a new PageWordCounter instance.
+   *
+   * @param fieldDeclaration of type Fields, declares the url, the word and the count
+   * @param lowercase        of type boolean, if words should be lower cased before counting
+   * @param form             of type Normalizer.Form, the normalization applied to words before counting, or null
+   */
+  public PageWordCounter( Fields fieldDeclaration, boolean lowercase, Normalizer.Form form )
+    {
+    super( 2, fieldDeclaration );
+
+    if( fieldDeclaration.size() != 3 )
+      throw new IllegalArgumentException( "fieldDeclaration must declare three fields, was: " + fieldDeclaration.print() );
+
+    this.lowercase = lowercase;
+    this.form = form;
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    // counts are accumulated across calls, so an argument must never be seen twice
+    return false;
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    Context context = new Context();
+    context.tokenizer = new WordTokenizer( lowercase, form );
+
+    operationCall.setContext( context );
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    Context context = functionCall.getContext();
+    TupleEntry arguments = functionCall.getArguments();
+    Comparable url = arguments.get( 0 );
+
+    // keep the collector so the last page can be flushed on cleanup
+    context.outputCollector = functionCall.getOutputCollector();
+
+    if( context.url != null && !context.url.equals( url ) )
+      flush( context );
+
+    context.url = url;
+
+    String text = arguments.getString( 1 );
+
+    if( text == null )
+      return;
+
+    WordTokenizer tokenizer = context.tokenizer;
+    String word;
+
+    tokenizer.reset( text );
+
+    while( ( word = tokenizer.next() ) != null )
+      context.counts.add( word );
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    Context context = operationCall.getContext();
+
+    if( context.outputCollector != null )
+      flush( context );
+
+    operationCall.setContext( null );
+    }
+
+  private void flush( Context context )
+    {
+    WordCounts counts = context.counts;
+    Tuple result = context.result;
+
+    result.set( 0, context.url );
+
+    for( int i = 0; i < counts.size(); i++ )
+      {
+      result.set( 1, counts.getWord( i ) );
+      result.set( 2, counts.getCount( i ) );
+      context.outputCollector.add( result );
+      }
+
+    counts.clear();
+    }
+  }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import cascading.operation.aggregator.Sum;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
+import cascading.tuple.Fields;
+
+/**
+ * Class SaltedSumBy sums a value field per key field in two steps, so a few hot keys cannot overload a reducer.
+ * <p/>
+ * A {@link HotKeySalter} spreads the tuples of hot keys over several salts, the first step sums per key and salt,
+ * and the second sums the partial sums per key. The second step only sees one tuple per key and salt, so it is small.
+ * Declares the key field and the value field, summed as a long, like a GroupBy on the key followed by a Sum.
+ */
+public class SaltedSumBy extends SubAssembly
+  {
+  public static final int DEFAULT_SAMPLE_SIZE = 100000;
+  public static final double DEFAULT_HOT_FRACTION = 0.001;
+
+  public SaltedSumBy( String name, Pipe pipe, Fields keyField, Fields valueField, int salts )
+    {
+    this( name, pipe, keyField, valueField, salts, DEFAULT_SAMPLE_SIZE, DEFAULT_HOT_FRACTION );
+    }
+
+  /**
+   * Constructor SaltedSumBy creates a new SaltedSumBy instance.
+   *
+   * @param name        of type String, the name of the tail
+   * @param pipe        of type Pipe
+   * @param keyField    of type Fields, the field to group on
+   * @param valueField  of type Fields, the field to sum
+   * @param salts       of type int, the number of salts a hot key is spread over
+   * @param sampleSize  of type int, the number of keys sampled by each mapper
+   * @param hotFraction of type double, the fraction of the sample above which a key is hot
+   */
+  public SaltedSumBy( String name, Pipe pipe, Fields keyField, Fields valueField, int salts, int sampleSize, double hotFraction )
+    {
+    Fields saltField = new Fields( "salt" );
+    Fields saltedFields = keyField.append( saltField ).append( valueField );
+
+    // salt the hot keys, "key", "salt", "value"
+    HotKeySalter salter = new HotKeySalter( saltedFields, salts, sampleSize, hotFraction );
+    pipe = new Each( pipe, keyField.append( valueField ), salter, Fields.RESULTS );
+
+    // sum per key and salt, the tuples of a hot key go to as many reducers as it has salts
+    pipe = new GroupBy( name + " salted", pipe, keyField.append( saltField ) );
+    pipe = new Every( pipe, valueField, new Sum( valueField, long.class ), saltedFields );
+
+    // sum the partial sums per key
+    pipe = new GroupBy( name, pipe, keyField );
+    pipe = new Every( pipe, valueField, new Sum( valueField, long.class ), keyField.append( valueField ) );
+
+    setTails( pipe );
+    }
+  }
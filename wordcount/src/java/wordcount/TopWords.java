@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+/**
+ * Class TopWords keeps the k words with the highest counts offered to it, in a bounded min heap, meant to be cleared
+ * and reused for every url. Of words with equal counts, the lexicographically smaller ones are kept, so the result
+ * does not depend on the order words are offered in.
+ */
+public class TopWords
+  {
+  private final int k;
+  private final String[] words;
+  private final long[] counts;
+  private int size;
+
+  public TopWords( int k )
+    {
+    if( k < 1 )
+      throw new IllegalArgumentException( "k must be positive, was: " + k );
+
+    this.k = k;
+    this.words = new String[ k ];
+    this.counts = new long[ k ];
+    }
+
+  public void offer( String word, long count )
+    {
+    if( size < k )
+      {
+      words[ size ] = word;
+      counts[ size ] = count;
+      siftUp( size++ );
+      return;
+      }
+
+    // the root is the worst word kept
+    if( !isBetter( word, count, 0 ) )
+      return;
+
+    words[ 0 ] = word;
+    counts[ 0 ] = count;
+    siftDown( 0, size );
+    }
+
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Method sort orders the words kept by descending count, then by word, after which they can be read with
+   * {@link #getWord(int)} and {@link #getCount(int)}. No words may be offered until cleared.
+   */
+  public void sort()
+    {
+    // heap sort, each pass moves the worst remaining word to the end
+    for( int last = size - 1; last > 0; last-- )
+      {
+      swap( 0, last );
+      siftDown( 0, last );
+      }
+    }
+
+  public String getWord( int index )
+    {
+    return words[ index ];
+    }
+
+  public long getCount( int index )
+    {
+    return counts[ index ];
+    }
+
+  public void clear()
+    {
+    for( int i = 0; i < size; i++ )
+      words[ i ] = null;
+
+    size = 0;
+    }
+
+  // true if word, count should be kept over the word at index
+  private boolean isBetter( String word, long count, int index )
+    {
+    if( count != counts[ index ] )
+      return count > counts[ index ];
+
+    return word.compareTo( words[ index ] ) < 0;
+    }
+
+  private void siftUp( int index )
+    {
+    while( index > 0 )
+      {
+      int parent = ( index - 1 ) / 2;
+
+      if( !isBetter( words[ parent ], counts[ parent ], index ) )
+        return;
+
+      swap( index, parent );
+      index = parent;
+      }
+    }
+
+  private void siftDown( int index, int length )
+    {
+    while( true )
+      {
+      int worst = index;
+      int left = 2 * index + 1;
+      int right = left + 1;
+
+      if( left < length && isBetter( words[ worst ], counts[ worst ], left ) )
+        worst = left;
+
+      if( right < length && isBetter( words[ worst ], counts[ worst ], right ) )
+        worst = right;
+
+      if( worst == index )
+        return;
+
+      swap( index, worst );
+      index = worst;
+      }
+    }
+
+  private void swap( int i, int j )
+    {
+    String word = words[ i ];
+    words[ i ] = words[ j ];
+    words[ j ] = word;
+
+    long count = counts[ i ];
+    counts[ i ] = counts[ j ];
+    counts[ j ] = count;
+    }
+  }
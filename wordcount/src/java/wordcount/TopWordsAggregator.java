@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.Aggregator;
+import cascading.operation.AggregatorCall;
+import cascading.operation.BaseOperation;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class TopWordsAggregator sums the counts per word of a group and emits the k words with the highest sums, one
+ * tuple each, by descending count, see {@link TopWords}. Its arguments are a word and a count.
+ * <p/>
+ * The group must be sorted on the word, e.g. a GroupBy on "url" with "word" as sort field, so the counts of a word
+ * arrive together and only k words are held at a time, however many distinct words the group has.
+ */
+public class TopWordsAggregator extends BaseOperation<TopWordsAggregator.Context> implements Aggregator<TopWordsAggregator.Context>
+  {
+  private final int k;
+
+  public static class Context
+    {
+    final TopWords topWords;
+    final Tuple result = Tuple.size( 2 );
+    String word;
+    long count;
+
+    Context( int k )
+      {
+      topWords = new TopWords( k );
+      }
+    }
+
+  /**
+   * Constructor TopWordsAggregator creates a new TopWordsAggregator instance.
+   *
+   * @param fieldDeclaration of type Fields, declares the word and the count
+   * @param k                of type int, the number of words to emit per group
+   */
+  public TopWordsAggregator( Fields fieldDeclaration, int k )
+    {
+    super( 2, fieldDeclaration );
+
+    if( fieldDeclaration.size() != 2 )
+      throw new IllegalArgumentException( "fieldDeclaration must declare two fields, was: " + fieldDeclaration.print() );
+
+    if( k < 1 )
+      throw new IllegalArgumentException( "k must be positive, was: " + k );
+
+    this.k = k;
+    }
+
+  public void start( FlowProcess flowProcess, AggregatorCall<Context> aggregatorCall )
+    {
+    Context context = aggregatorCall.getContext();
+
+    if( context == null )
+      aggregatorCall.setContext( new Context( k ) );
+    else
+      context.topWords.clear();
+    }
+
+  public void aggregate( FlowProcess flowProcess, AggregatorCall<Context> aggregatorCall )
+    {
+    Context context = aggregatorCall.getContext();
+    TupleEntry arguments = aggregatorCall.getArguments();
+    String word = arguments.getString( 0 );
+    long count = arguments.getLong( 1 );
+
+    if( word.equals( context.word ) )
+      {
+      context.count += count;
+      return;
+      }
+
+    // the previous word is complete
+    if( context.word != null )
+      context.topWords.offer( context.word, context.count );
+
+    context.word = word;
+    context.count = count;
+    }
+
+  public void complete( FlowProcess flowProcess, AggregatorCall<Context> aggregatorCall )
+    {
+    Context context = aggregatorCall.getContext();
+    TopWords topWords = context.topWords;
+
+    if( context.word != null )
+      topWords.offer( context.word, context.count );
+
+    context.word = null;
+    topWords.sort();
+
+    for( int i = 0; i < topWords.size(); i++ )
+      {
+      context.result.set( 0, topWords.getWord( i ) );
+      context.result.set( 1, topWords.getCount( i ) );
+      aggregatorCall.getOutputCollector().add( context.result );
+      }
+    }
+  }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Class TopWordsTrimmer pre-trims the word counts of each url on the map side, before they are grouped by a
+ * {@link TopWordsAggregator}. Its arguments are a url, a word and a count, and it emits, per run of consecutive
+ * tuples with the same url, the k words with the highest counts in that run, as a url, a word and a count.
+ * <p/>
+ * The result is only exact if all the words of a url arrive in a single run, as they do when each url occurs once in
+ * the input. A word trimmed from one run of a url may otherwise still belong to the top k of its totals.
+ */
+public class TopWordsTrimmer extends BaseOperation<TopWordsTrimmer.Context> implements Function<TopWordsTrimmer.Context>
+  {
+  private final int k;
+
+  public static class Context
+    {
+    final WordCounts counts = new WordCounts();
+    final TopWords topWords;
+    final Tuple result = Tuple.size( 3 );
+    Comparable url;
+    TupleEntryCollector outputCollector;
+
+    Context( int k )
+      {
+      topWords = new TopWords( k );
+      }
+    }
+
+  /**
+   * Constructor TopWordsTrimmer creates a new TopWordsTrimmer instance.
+   *
+   * @param fieldDeclaration of type Fields, declares the url, the word and the count
+   * @param k                of type int, the number of words to emit per url
+   */
+  public TopWordsTrimmer( Fields fieldDeclaration, int k )
+    {
+    super( 3, fieldDeclaration );
+
+    if( fieldDeclaration.size() != 3 )
+      throw new IllegalArgumentException( "fieldDeclaration must declare three fields, was: " + fieldDeclaration.print() );
+
+    if( k < 1 )
+      throw new IllegalArgumentException( "k must be positive, was: " + k );
+
+    this.k = k;
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    // counts are accumulated across calls, so an argument must never be seen twice
+    return false;
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    operationCall.setContext( new Context( k ) );
+    }
+
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    Context context = functionCall.getContext();
+    TupleEntry arguments = functionCall.getArguments();
+    Comparable url = arguments.get( 0 );
+
+    // keep the collector so the last url can be flushed on cleanup
+    context.outputCollector = functionCall.getOutputCollector();
+
+    if( context.url != null && !context.url.equals( url ) )
+      flush( context );
+
+    context.url = url;
+    context.counts.add( arguments.getString( 1 ), arguments.getInteger( 2 ) );
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    Context context = operationCall.getContext();
+
+    if( context.outputCollector != null )
+      flush( context );
+
+    operationCall.setContext( null );
+    }
+
+  private void flush( Context context )
+    {
+    WordCounts counts = context.counts;
+    TopWords topWords = context.topWords;
+    Tuple result = context.result;
+
+    for( int i = 0; i < counts.size(); i++ )
+      topWords.offer( counts.getWord( i ), counts.getCount( i ) );
+
+    topWords.sort();
+
+    result.set( 0, context.url );
+
+    for( int i = 0; i < topWords.size(); i++ )
+      {
+      result.set( 1, topWords.getWord( i ) );
+      result.set( 2, topWords.getCount( i ) );
+      context.outputCollector.add( result );
+      }
+
+    counts.clear();
+    topWords.clear();
+    }
+  }
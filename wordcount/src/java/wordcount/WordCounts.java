@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+/**
+ * Class WordCounts is an open addressing hash map from words to int counts, meant to be cleared and reused for
+ * every page. Clearing only touches the slots that were used.
+ */
+public class WordCounts
+  {
+  private String[] words = new String[ 256 ];
+  private int[] counts = new int[ 256 ];
+
+  // the slots in use, in insertion order
+  private int[] used = new int[ 256 ];
+  private int size;
+
+  public void add( String word )
+    {
+    add( word, 1 );
+    }
+
+  public void add( String word, int count )
+    {
+    int mask = words.length - 1;
+    int slot = mix( word.hashCode() ) & mask;
+
+    while( words[ slot ] != null )
+      {
+      if( words[ slot ].equals( word ) )
+        {
+        counts[ slot ] += count;
+        return;
+        }
+
+      slot = ( slot + 1 ) & mask;
+      }
+
+    words[ slot ] = word;
+    counts[ slot ] = count;
+    used[ size++ ] = slot;
+
+    // keep the load factor at or below one half
+    if( size * 2 > words.length )
+      resize();
+    }
+
+  public int size()
+    {
+    return size;
+    }
+
+  /** the word of the index-th distinct word added */
+  public String getWord( int index )
+    {
+    return words[ used[ index ] ];
+    }
+
+  public int getCount( int index )
+    {
+    return counts[ used[ index ] ];
+    }
+
+  public void clear()
+    {
+    for( int i = 0; i < size; i++ )
+      words[ used[ i ] ] = null;
+
+    size = 0;
+    }
+
+  private void resize()
+    {
+    String[] oldWords = words;
+    int[] oldCounts = counts;
+    int[] oldUsed = used;
+    int oldSize = size;
+
+    words = new String[ oldWords.length * 2 ];
+    counts = new int[ oldCounts.length * 2 ];
+    used = new int[ oldUsed.length * 2 ];
+    size = 0;
+
+    for( int i = 0; i < oldSize; i++ )
+      add( oldWords[ oldUsed[ i ] ], oldCounts[ oldUsed[ i ] ] );
+    }
+
+  // spread the String hash, its low bits are poor for short words
+  private static int mix( int hash )
+    {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+
+    return hash;
+    }
+  }
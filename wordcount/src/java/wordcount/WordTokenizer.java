@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import java.io.Serializable;
+import java.text.Normalizer;
+
+/**
+ * Class WordTokenizer finds the same words as the regex "(?<!\pL)(?=\pL)[^ ]*(?<=\pL)(?!\pL)" in a single pass over
+ * the code points of the text, without backtracking.
+ * <p/>
+ * A word starts at a letter not preceded by a letter, and ends after the last letter before the next space, so it
+ * may contain any non space character in between, e.g. "don't" or "a-b". Words are optionally lower cased in the
+ * same pass, and optionally normalized, which is skipped for words that are plain ascii.
+ * <p/>
+ * Unlike the regex, letters outside the basic multilingual plane may also end a word, the regex lookbehind does not
+ * see them as letters.
+ * <p/>
+ * Instances are not thread safe.
+ */
+public class WordTokenizer implements Serializable
+  {
+  private final boolean lowercase;
+  private final Normalizer.Form form;
+
+  private transient CharSequence text;
+  private transient int position;
+  private transient char[] buffer;
+
+  public WordTokenizer()
+    {
+    this( false, null );
+    }
+
+  /**
+   * Constructor WordTokenizer creates a new WordTokenizer instance.
+   *
+   * @param lowercase of type boolean, if words should be lower cased
+   * @param form      of type Normalizer.Form, the normalization applied to words, or null
+   */
+  public WordTokenizer( boolean lowercase, Normalizer.Form form )
+    {
+    this.lowercase = lowercase;
+    this.form = form;
+    }
+
+  public void reset( CharSequence text )
+    {
+    this.text = text;
+    this.position = 0;
+    }
+
+  /**
+   * Method next returns the next word, or null once there are no more.
+   *
+   * @return String
+   */
+  public String next()
+    {
+    int length = text.length();
+    int start = -1;
+    boolean previousLetter = position != 0 && Character.isLetter( Character.codePointBefore( text, position ) );
+
+    while( position < length )
+      {
+      int codePoint = Character.codePointAt( text, position );
+      boolean letter = Character.isLetter( codePoint );
+
+      if( letter && !previousLetter )
+        {
+        start = position;
+        break;
+        }
+
+      previousLetter = letter;
+      position += Character.charCount( codePoint );
+      }
+
+    if( start == -1 )
+      return null;
+
+    // run to the next space, remembering where the last letter ended
+    boolean copy = lowercase;
+    boolean ascii = true;
+    int end = start;
+    int copied = 0;
+    int copiedEnd = 0;
+
+    if( copy && buffer == null )
+      buffer = new char[ 64 ];
+
+    while( position < length )
+      {
+      int codePoint = Character.codePointAt( text, position );
+
+      if( codePoint == ' ' )
+        break;
+
+      position += Character.charCount( codePoint );
+
+      if( codePoint > 0x7f )
+        ascii = false;
+
+      if( copy )
+        {
+        if( copied + 2 > buffer.length )
+          buffer = grow( buffer, copied );
+
+        copied += Character.toChars( Character.toLowerCase( codePoint ), buffer, copied );
+        }
+
+      if( Character.isLetter( codePoint ) )
+        {
+        end = position;
+        copiedEnd = copied;
+        }
+      }
+
+    // nothing after the last letter can start a word before the space, continue from there
+    String word = copy ? new String( buffer, 0, copiedEnd ) : text.subSequence( start, end ).toString();
+
+    if( form != null && !ascii && !Normalizer.isNormalized( word, form ) )
+      word = Normalizer.normalize( word, form );
+
+    return word;
+    }
+
+  private static char[] grow( char[] buffer, int length )
+    {
+    char[] grown = new char[ buffer.length * 2 ];
+    System.arraycopy( buffer, 0, grown, 0, length );
+
+    return grown;
+    }
+  }
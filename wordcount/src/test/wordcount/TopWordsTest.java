@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package wordcount;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import cascading.CascadingTestCase;
+
+/**
+ * Checks that {@link TopWords} keeps the same words, in the same order, as fully sorting the words by descending
+ * count, then by word, and taking the first k.
+ */
+public class TopWordsTest extends CascadingTestCase
+  {
+  static class WordCount
+    {
+    final String word;
+    final long count;
+
+    WordCount( String word, long count )
+      {
+      this.word = word;
+      this.count = count;
+      }
+
+    @Override
+    public String toString()
+      {
+      return word + "=" + count;
+      }
+    }
+
+  static final Comparator<WordCount> BY_COUNT_THEN_WORD = new Comparator<WordCount>()
+  {
+  public int compare( WordCount lhs, WordCount rhs )
+    {
+    if( lhs.count != rhs.count )
+      return lhs.count > rhs.count ? -1 : 1;
+
+    return lhs.word.compareTo( rhs.word );
+    }
+  };
+
+  public TopWordsTest()
+    {
+    super( "top words tests" );
+    }
+
+  public void testFewerWordsThanK()
+    {
+    List<WordCount> words = new ArrayList<WordCount>();
+
+    words.add( new WordCount( "b", 2 ) );
+    words.add( new WordCount( "a", 1 ) );
+    words.add( new WordCount( "c", 3 ) );
+
+    assertEquals( "[c=3, b=2, a=1]", top( words, 10 ).toString() );
+    assertEquals( "[c=3, b=2, a=1]", top( words, 3 ).toString() );
+    assertEquals( "[]", top( new ArrayList<WordCount>(), 3 ).toString() );
+    }
+
+  public void testTies()
+    {
+    List<WordCount> words = new ArrayList<WordCount>();
+
+    for( String word : new String[]{"d", "b", "e", "a", "c"} )
+      words.add( new WordCount( word, 5 ) );
+
+    words.add( new WordCount( "z", 6 ) );
+
+    assertEquals( "[z=6, a=5, b=5]", top( words, 3 ).toString() );
+
+    // the same words whatever the order they are offered in
+    Collections.reverse( words );
+
+    assertEquals( "[z=6, a=5, b=5]", top( words, 3 ).toString() );
+    }
+
+  public void testRandomWords()
+    {
+    Random random = new Random( 0 );
+    TopWords topWords = null;
+    int k = 0;
+
+    for( int run = 0; run < 2000; run++ )
+      {
+      // each instance is cleared and reused for ten runs, as for the urls of a group
+      if( run % 10 == 0 )
+        {
+        k = 1 + random.nextInt( 20 );
+        topWords = new TopWords( k );
+        }
+
+      int distinct = random.nextInt( 40 );
+
+      // few distinct counts, so many words tie
+      int counts = 1 + random.nextInt( run % 2 == 0 ? 5 : 1000 );
+      List<WordCount> words = new ArrayList<WordCount>();
+
+      for( int i = 0; i < distinct; i++ )
+        words.add( new WordCount( "w" + i, random.nextInt( counts ) ) );
+
+      Collections.shuffle( words, random );
+
+      assertEquals( "k: " + k + ", words: " + words, fullSort( words, k ).toString(), top( topWords, words ).toString() );
+      }
+    }
+
+  public void testReuse()
+    {
+    TopWords topWords = new TopWords( 2 );
+    List<WordCount> words = new ArrayList<WordCount>();
+
+    words.add( new WordCount( "a", 1 ) );
+    words.add( new WordCount( "b", 2 ) );
+    words.add( new WordCount( "c", 3 ) );
+
+    assertEquals( "[c=3, b=2]", top( topWords, words ).toString() );
+
+    words.remove( 2 );
+
+    assertEquals( "[b=2, a=1]", top( topWords, words ).toString() );
+    }
+
+  private static List<WordCount> top( List<WordCount> words, int k )
+    {
+    return top( new TopWords( k ), words );
+    }
+
+  // offers the words, then reads back the sorted result and clears for the next use
+  private static List<WordCount> top( TopWords topWords, List<WordCount> words )
+    {
+    for( WordCount word : words )
+      topWords.offer( word.word, word.count );
+
+    topWords.sort();
+
+    List<WordCount> result = new ArrayList<WordCount>();
+
+    for( int i = 0; i < topWords.size(); i++ )
+      result.add( new WordCount( topWords.getWord( i ), topWords.getCount( i ) ) );
+
+    topWords.clear();
+
+    return result;
+    }
+
+  private static List<WordCount> fullSort( List<WordCount> words, int k )
+    {
+    List<WordCount> sorted = new ArrayList<WordCount>( words );
+
+    Collections.sort( sorted, BY_COUNT_THEN_WORD );
+
+    return sorted.subList( 0, Math.min( k, sorted.size() ) );
+    }
+  }
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2007-2010 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Cascading is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Cascading is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cascading.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package wordcount;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import cascading.CascadingTestCase;
+import cascading.operation.regex.RegexGenerator;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleListCollector;
+
+/**
+ * Checks that {@link WordTokenizer} finds the same words as the RegexGenerator it replaced in the wordcount sample.
+ */
+public class WordTokenizerTest extends CascadingTestCase
+  {
+  // the regex the wordcount sample generated words with
+  static final String WORD_REGEX = "(?<!\\pL)(?=\\pL)[^ ]*(?<=\\pL)(?!\\pL)";
+
+  static final String[] CORPUS = {
+    "the quick brown fox jumps over the lazy dog",
+    "Straße naïve café résumé Ærøskøbing",
+    "日本語のテキスト 中文 한국어 텍스트",
+    "Привет, мир! ελληνικά κείμενα",
+    "שלום עולם مرحبا بالعالم",
+    "हिन्दी पाठ ภาษาไทย",
+    "2007 abc123 123abc 12ab34 1.5 v2",
+    "don't rock'n'roll 'quoted' \"double\" o'",
+    "(see below) -- end. ...dots... a-b a--b -a- a_b",
+    "  leading and trailing spaces  ",
+    "tabs\tand\nnew lines\r\nare not separators",
+    "e-mail U.S. x.y.z a/b/c <b>tag</b> http://www.cascading.org/",
+    "",
+    " ",
+    "1 2 3 !?",
+    "a",
+    "é",
+    "ab́c café ́a"
+  };
+
+  // single chars or short strings random text is made of, letters, marks, digits and separators, all in the bmp
+  static final String[] PIECES = {
+    "a", "Z", "é", "ß", "ж", "λ", "ש", "م", "ह", "ि", "्", "日", "語", "한", "ภ", "́",
+    "0", "7", "'", "\"", "-", ".", ",", "(", ")", "_", "/", "\t", "\n", " ", " ", " "
+  };
+
+  public WordTokenizerTest()
+    {
+    super( "word tokenizer" );
+    }
+
+  public void testCorpus()
+    {
+    for( String text : CORPUS )
+      assertEquals( "words in: [" + text + "]", regexWords( text ), tokenizerWords( text ) );
+    }
+
+  public void testRandomText()
+    {
+    Random random = new Random( 0 );
+
+    for( int i = 0; i < 2000; i++ )
+      {
+      StringBuilder builder = new StringBuilder();
+      int length = random.nextInt( 40 );
+
+      for( int j = 0; j < length; j++ )
+        builder.append( PIECES[ random.nextInt( PIECES.length ) ] );
+
+      String text = builder.toString();
+
+      assertEquals( "words in: [" + text + "]", regexWords( text ), tokenizerWords( text ) );
+      }
+    }
+
+  // the one documented difference, the regex lookbehind does not see letters outside the bmp, e.g. U+1D400
+  public void testSupplementaryLetterEndsWord()
+    {
+    String bold = "\uD835\uDC00";
+    String text = "a" + bold + " " + bold + "b x";
+
+    assertEquals( list( bold + "b", "x" ), regexWords( text ) );
+    assertEquals( list( "a" + bold, bold + "b", "x" ), tokenizerWords( text ) );
+    }
+
+  public void testReset()
+    {
+    WordTokenizer tokenizer = new WordTokenizer();
+
+    tokenizer.reset( "first text" );
+    assertEquals( "first", tokenizer.next() );
+
+    tokenizer.reset( "second" );
+    assertEquals( "second", tokenizer.next() );
+    assertNull( tokenizer.next() );
+    }
+
+  private static List<String> list( String... words )
+    {
+    return Arrays.asList( words );
+    }
+
+  private static List<String> regexWords( String text )
+    {
+    TupleListCollector collector = invokeFunction( new RegexGenerator( new Fields( "word" ), WORD_REGEX ), new Tuple( text ), new Fields( "word" ) );
+    List<String> words = new ArrayList<String>();
+    Iterator<Tuple> iterator = collector.iterator();
+
+    while( iterator.hasNext() )
+      words.add( iterator.next().getString( 0 ) );
+
+    return words;
+    }
+
+  private static List<String> tokenizerWords( String text )
+    {
+    WordTokenizer tokenizer = new WordTokenizer();
+    List<String> words = new ArrayList<String>();
+    String word;
+
+    tokenizer.reset( text );
+
+    while( ( word = tokenizer.next() ) != null )
+      words.add( word );
+
+    return words;
+    }
+  }